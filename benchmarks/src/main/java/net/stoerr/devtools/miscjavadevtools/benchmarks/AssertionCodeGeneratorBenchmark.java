@@ -0,0 +1,50 @@
+package net.stoerr.devtools.miscjavadevtools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.stoerr.devtools.miscjavadevtools.codegenerator.AssertionCodeGenerator;
+import net.stoerr.devtools.miscjavadevtools.testutils.SimpleBeanFiller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link AssertionCodeGenerator#makeAssertions(String, Object)}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AssertionCodeGeneratorBenchmark {
+
+    private SmallBean smallBean;
+    private WideBean wideBean;
+
+    @Setup
+    public void setup() {
+        smallBean = SimpleBeanFiller.fillBean(new SmallBean(), 1);
+        wideBean = SimpleBeanFiller.fillBean(new WideBean(), 1);
+    }
+
+    @Benchmark
+    public String smallBean() {
+        return AssertionCodeGenerator.makeAssertions("bean", smallBean);
+    }
+
+    @Benchmark
+    public String wideBean() {
+        return AssertionCodeGenerator.makeAssertions("bean", wideBean);
+    }
+
+}
@@ -0,0 +1,88 @@
+package net.stoerr.devtools.miscjavadevtools.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.stoerr.devtools.miscjavadevtools.codegenerator.BeanCodeGenerator;
+import net.stoerr.devtools.miscjavadevtools.testutils.SimpleBeanFiller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link BeanCodeGenerator#makeBean(Object, String)} with small, wide and deep beans and large
+ * collections of beans.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeanCodeGeneratorBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private SmallBean smallBean;
+    private WideBean wideBean;
+    private NodeBean deepBean;
+    private List<SmallBean> largeList;
+    private Map<Integer, SmallBean> largeMap;
+
+    @Setup
+    public void setup() {
+        smallBean = SimpleBeanFiller.fillBean(new SmallBean(), 1);
+        wideBean = SimpleBeanFiller.fillBean(new WideBean(), 1);
+        deepBean = NodeBean.chain(SIZE);
+        largeList = new ArrayList<>();
+        largeMap = new HashMap<>();
+        for (int i = 0; i < SIZE; ++i) {
+            largeList.add(SimpleBeanFiller.fillBean(new SmallBean(), i));
+            largeMap.put(i, largeList.get(i));
+        }
+    }
+
+    @Benchmark
+    public String smallBean() {
+        return code(smallBean);
+    }
+
+    @Benchmark
+    public String wideBean() {
+        return code(wideBean);
+    }
+
+    @Benchmark
+    public String deepBean() {
+        return code(deepBean);
+    }
+
+    @Benchmark
+    public String largeList() {
+        return code(largeList);
+    }
+
+    @Benchmark
+    public String largeMap() {
+        return code(largeMap);
+    }
+
+    private String code(final Object bean) {
+        final BeanCodeGenerator generator = new BeanCodeGenerator();
+        generator.makeBean(bean, "bean");
+        return generator.getCode();
+    }
+
+}
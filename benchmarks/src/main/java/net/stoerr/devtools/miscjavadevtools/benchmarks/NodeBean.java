@@ -0,0 +1,41 @@
+package net.stoerr.devtools.miscjavadevtools.benchmarks;
+
+/**
+ * A bean referencing another one, for deep object graphs.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class NodeBean {
+
+    private String name;
+    private NodeBean next;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public NodeBean getNext() {
+        return next;
+    }
+
+    public void setNext(final NodeBean next) {
+        this.next = next;
+    }
+
+    /** A linked list of length NodeBeans. */
+    public static NodeBean chain(final int length) {
+        final NodeBean head = new NodeBean();
+        NodeBean current = head;
+        for (int i = 1; i < length; ++i) {
+            current.setName("node" + i);
+            current.setNext(new NodeBean());
+            current = current.getNext();
+        }
+        current.setName("last");
+        return head;
+    }
+
+}
@@ -0,0 +1,53 @@
+package net.stoerr.devtools.miscjavadevtools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.stoerr.devtools.miscjavadevtools.testutils.SimpleBeanFiller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for filling beans with {@link SimpleBeanFiller} and generating the filler code. The state is per thread,
+ * since the perturbation counter is advanced by every invocation.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimpleBeanFillerBenchmark {
+
+    private final SimpleBeanFiller filler = new SimpleBeanFiller(42);
+    private int perturbation;
+
+    @Benchmark
+    public SmallBean fillSmallBean() {
+        return SimpleBeanFiller.fillBean(new SmallBean(), ++perturbation);
+    }
+
+    @Benchmark
+    public WideBean fillWideBean() {
+        return SimpleBeanFiller.fillBean(new WideBean(), ++perturbation);
+    }
+
+    @Benchmark
+    public String smallBeanFillerCode() {
+        return filler.beanFillerCode("bean", new SmallBean());
+    }
+
+    @Benchmark
+    public String wideBeanFillerCode() {
+        return filler.beanFillerCode("bean", new WideBean());
+    }
+
+}
@@ -0,0 +1,37 @@
+package net.stoerr.devtools.miscjavadevtools.benchmarks;
+
+/**
+ * A bean with just a few simple properties.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class SmallBean {
+
+    private String name;
+    private int count;
+    private boolean active;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(final int count) {
+        this.count = count;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(final boolean active) {
+        this.active = active;
+    }
+
+}
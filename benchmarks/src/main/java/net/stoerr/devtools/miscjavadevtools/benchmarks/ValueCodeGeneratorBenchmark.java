@@ -0,0 +1,78 @@
+package net.stoerr.devtools.miscjavadevtools.benchmarks;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import net.stoerr.devtools.miscjavadevtools.codegenerator.ValueCodeGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link ValueCodeGenerator#makeExpression(Object, Type, boolean)}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValueCodeGeneratorBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private Integer integer;
+    private String string;
+    private List<Integer> list;
+    private Map<Integer, String> map;
+    private Type listType;
+    private Type mapType;
+
+    @Setup
+    public void setup() throws Exception {
+        integer = 4711;
+        string = "some string value";
+        list = new ArrayList<>();
+        map = new TreeMap<>();
+        for (int i = 0; i < SIZE; ++i) {
+            list.add(i);
+            map.put(i, "value" + i);
+        }
+        listType = ValueCodeGeneratorBenchmark.class.getDeclaredField("list").getGenericType();
+        mapType = ValueCodeGeneratorBenchmark.class.getDeclaredField("map").getGenericType();
+    }
+
+    @Benchmark
+    public String integer() {
+        return ValueCodeGenerator.makeExpression(integer, Integer.class, false);
+    }
+
+    @Benchmark
+    public String string() {
+        return ValueCodeGenerator.makeExpression(string, String.class, false);
+    }
+
+    @Benchmark
+    public String largeList() {
+        return ValueCodeGenerator.makeExpression(list, listType, true);
+    }
+
+    @Benchmark
+    public String largeMap() {
+        return ValueCodeGenerator.makeExpression(map, mapType, true);
+    }
+
+}
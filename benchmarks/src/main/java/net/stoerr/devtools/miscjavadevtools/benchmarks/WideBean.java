@@ -0,0 +1,232 @@
+package net.stoerr.devtools.miscjavadevtools.benchmarks;
+
+import java.lang.annotation.ElementType;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bean with many properties of all types supported by the SimpleBeanFiller.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class WideBean {
+
+    private String aString;
+    private int anInt;
+    private Integer anInteger;
+    private long aLong;
+    private Long aLongObject;
+    private boolean aBoolean;
+    private char aChar;
+    private Date aDate;
+    private GregorianCalendar aCalendar;
+    private ElementType anEnum;
+    private List<String> aList;
+    private Map<Integer, String> aMap;
+    private String aString2;
+    private int anInt2;
+    private Integer anInteger2;
+    private long aLong2;
+    private Long aLongObject2;
+    private boolean aBoolean2;
+    private char aChar2;
+    private Date aDate2;
+    private GregorianCalendar aCalendar2;
+    private ElementType anEnum2;
+    private List<String> aList2;
+    private Map<Integer, String> aMap2;
+
+    public String getAString() {
+        return aString;
+    }
+
+    public void setAString(final String aString) {
+        this.aString = aString;
+    }
+
+    public int getAnInt() {
+        return anInt;
+    }
+
+    public void setAnInt(final int anInt) {
+        this.anInt = anInt;
+    }
+
+    public Integer getAnInteger() {
+        return anInteger;
+    }
+
+    public void setAnInteger(final Integer anInteger) {
+        this.anInteger = anInteger;
+    }
+
+    public long getALong() {
+        return aLong;
+    }
+
+    public void setALong(final long aLong) {
+        this.aLong = aLong;
+    }
+
+    public Long getALongObject() {
+        return aLongObject;
+    }
+
+    public void setALongObject(final Long aLongObject) {
+        this.aLongObject = aLongObject;
+    }
+
+    public boolean isABoolean() {
+        return aBoolean;
+    }
+
+    public void setABoolean(final boolean aBoolean) {
+        this.aBoolean = aBoolean;
+    }
+
+    public char getAChar() {
+        return aChar;
+    }
+
+    public void setAChar(final char aChar) {
+        this.aChar = aChar;
+    }
+
+    public Date getADate() {
+        return aDate;
+    }
+
+    public void setADate(final Date aDate) {
+        this.aDate = aDate;
+    }
+
+    public GregorianCalendar getACalendar() {
+        return aCalendar;
+    }
+
+    public void setACalendar(final GregorianCalendar aCalendar) {
+        this.aCalendar = aCalendar;
+    }
+
+    public ElementType getAnEnum() {
+        return anEnum;
+    }
+
+    public void setAnEnum(final ElementType anEnum) {
+        this.anEnum = anEnum;
+    }
+
+    public List<String> getAList() {
+        return aList;
+    }
+
+    public void setAList(final List<String> aList) {
+        this.aList = aList;
+    }
+
+    public Map<Integer, String> getAMap() {
+        return aMap;
+    }
+
+    public void setAMap(final Map<Integer, String> aMap) {
+        this.aMap = aMap;
+    }
+
+    public String getAString2() {
+        return aString2;
+    }
+
+    public void setAString2(final String aString2) {
+        this.aString2 = aString2;
+    }
+
+    public int getAnInt2() {
+        return anInt2;
+    }
+
+    public void setAnInt2(final int anInt2) {
+        this.anInt2 = anInt2;
+    }
+
+    public Integer getAnInteger2() {
+        return anInteger2;
+    }
+
+    public void setAnInteger2(final Integer anInteger2) {
+        this.anInteger2 = anInteger2;
+    }
+
+    public long getALong2() {
+        return aLong2;
+    }
+
+    public void setALong2(final long aLong2) {
+        this.aLong2 = aLong2;
+    }
+
+    public Long getALongObject2() {
+        return aLongObject2;
+    }
+
+    public void setALongObject2(final Long aLongObject2) {
+        this.aLongObject2 = aLongObject2;
+    }
+
+    public boolean isABoolean2() {
+        return aBoolean2;
+    }
+
+    public void setABoolean2(final boolean aBoolean2) {
+        this.aBoolean2 = aBoolean2;
+    }
+
+    public char getAChar2() {
+        return aChar2;
+    }
+
+    public void setAChar2(final char aChar2) {
+        this.aChar2 = aChar2;
+    }
+
+    public Date getADate2() {
+        return aDate2;
+    }
+
+    public void setADate2(final Date aDate2) {
+        this.aDate2 = aDate2;
+    }
+
+    public GregorianCalendar getACalendar2() {
+        return aCalendar2;
+    }
+
+    public void setACalendar2(final GregorianCalendar aCalendar2) {
+        this.aCalendar2 = aCalendar2;
+    }
+
+    public ElementType getAnEnum2() {
+        return anEnum2;
+    }
+
+    public void setAnEnum2(final ElementType anEnum2) {
+        this.anEnum2 = anEnum2;
+    }
+
+    public List<String> getAList2() {
+        return aList2;
+    }
+
+    public void setAList2(final List<String> aList2) {
+        this.aList2 = aList2;
+    }
+
+    public Map<Integer, String> getAMap2() {
+        return aMap2;
+    }
+
+    public void setAMap2(final Map<Integer, String> aMap2) {
+        this.aMap2 = aMap2;
+    }
+
+}
@@ -0,0 +1,208 @@
+package net.stoerr.devtools.miscjavadevtools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides by simple rules whether a class name is kept, e.g. when cleaning up stacktraces in
+ * {@link StacktraceForLogging}. A class name is dropped if it contains one of the dropped substrings, if it starts with
+ * one of the dropped prefixes, or if there are required prefixes and it starts with none of them. The rules are
+ * compiled into automata that check a name in one pass without allocating anything, and the verdicts are cached per
+ * class name. Please configure the filter completely before using it from several threads.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class ClassNameFilter {
+
+    /** Upper limit for the number of cached verdicts - for further class names the verdict is computed each time. */
+    private static final int MAX_CACHED_VERDICTS = 4096;
+
+    private final List<String> droppedSubstrings = new ArrayList<>();
+    private final List<String> droppedPrefixes = new ArrayList<>();
+    private final List<String> requiredPrefixes = new ArrayList<>();
+
+    private volatile Automaton droppedSubstringMatcher = new Automaton(droppedSubstrings, false);
+    private volatile Automaton droppedPrefixMatcher = new Automaton(droppedPrefixes, true);
+    /** null if there are no required prefixes. */
+    private volatile Automaton requiredPrefixMatcher;
+
+    private final ConcurrentMap<String, Boolean> verdicts = new ConcurrentHashMap<>();
+
+    /**
+     * A new filter that removes the annoying stacktrace lines from AspectJ / CGLib / reflection / Tomcat, as used by
+     * {@link StacktraceForLogging#withCleanedStacktrace()}. It can be extended by further rules.
+     */
+    public static ClassNameFilter defaultCleanup() {
+        return new ClassNameFilter().withDroppedSubstrings("$", "Cglib", "cglib.proxy", "java.lang.reflect",
+                "jdk.internal.reflect", "org.springframework.aop", "org.apache.catalina", "net.bull.javamelody",
+                "sun.reflect");
+    }
+
+    /** Drops all class names containing one of the substrings. */
+    public synchronized ClassNameFilter withDroppedSubstrings(final String... substrings) {
+        droppedSubstrings.addAll(Arrays.asList(substrings));
+        droppedSubstringMatcher = new Automaton(droppedSubstrings, false);
+        verdicts.clear();
+        return this;
+    }
+
+    /** Drops all class names starting with one of the prefixes, e.g. <code>"org.apache.catalina."</code>. */
+    public synchronized ClassNameFilter withDroppedPrefixes(final String... prefixes) {
+        droppedPrefixes.addAll(Arrays.asList(prefixes));
+        droppedPrefixMatcher = new Automaton(droppedPrefixes, true);
+        verdicts.clear();
+        return this;
+    }
+
+    /**
+     * Keeps only class names starting with one of the prefixes given here or in earlier calls, e.g. <code>"de."</code>.
+     */
+    public synchronized ClassNameFilter withRequiredPrefixes(final String... prefixes) {
+        requiredPrefixes.addAll(Arrays.asList(prefixes));
+        requiredPrefixMatcher = new Automaton(requiredPrefixes, true);
+        verdicts.clear();
+        return this;
+    }
+
+    /** True if the class name is kept, false if it is dropped. */
+    public boolean accepts(final String className) {
+        final Boolean cached = verdicts.get(className);
+        if (null != cached) return cached.booleanValue();
+        final Automaton required = requiredPrefixMatcher;
+        final boolean verdict = (null == required || required.matches(className))
+                && !droppedPrefixMatcher.matches(className) && !droppedSubstringMatcher.matches(className);
+        if (verdicts.size() < MAX_CACHED_VERDICTS) verdicts.put(className, verdict);
+        return verdict;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ClassNameFilter[droppedSubstrings=" + droppedSubstrings + ", droppedPrefixes=" + droppedPrefixes
+                + ", requiredPrefixes=" + requiredPrefixes + "]";
+    }
+
+    /**
+     * A deterministic automaton over the characters occurring in some words. If anchored, it is a trie checking whether
+     * a name starts with one of the words; otherwise it is an Aho-Corasick automaton checking whether a name contains
+     * one of the words.
+     */
+    private static final class Automaton {
+
+        /** The symbol number of ASCII characters, -1 if they do not occur in the words. */
+        private final int[] asciiSymbols = new int[128];
+        /** The sorted non-ASCII characters occurring in the words; their symbol numbers follow the ASCII symbols. */
+        private final char[] otherChars;
+        private final int asciiSymbolCount;
+        /** The transitions per state and symbol; -1 if there is no transition, which happens only if anchored. */
+        private final int[][] transitions;
+        /** Whether one of the words ends at the state, or, if not anchored, at a suffix of the state. */
+        private final boolean[] accepting;
+        private final boolean anchored;
+
+        Automaton(final Collection<String> words, final boolean anchored) {
+            this.anchored = anchored;
+            final TreeSet<Character> chars = new TreeSet<>();
+            for (final String word : words)
+                for (final char c : word.toCharArray())
+                    chars.add(c);
+            Arrays.fill(asciiSymbols, -1);
+            int symbolCount = 0;
+            final StringBuilder others = new StringBuilder();
+            for (final Character c : chars) {
+                if (c < 128) asciiSymbols[c] = symbolCount++;
+                else others.append(c.charValue());
+            }
+            asciiSymbolCount = symbolCount;
+            otherChars = others.toString().toCharArray();
+            symbolCount += otherChars.length;
+
+            final List<int[]> transitionList = new ArrayList<>();
+            final List<Boolean> acceptingList = new ArrayList<>();
+            transitionList.add(newRow(symbolCount));
+            acceptingList.add(false);
+            for (final String word : words) {
+                int state = 0;
+                for (int i = 0; i < word.length(); ++i) {
+                    final int symbol = symbol(word.charAt(i));
+                    if (transitionList.get(state)[symbol] < 0) {
+                        transitionList.get(state)[symbol] = transitionList.size();
+                        transitionList.add(newRow(symbolCount));
+                        acceptingList.add(false);
+                    }
+                    state = transitionList.get(state)[symbol];
+                }
+                acceptingList.set(state, true);
+            }
+            transitions = transitionList.toArray(new int[transitionList.size()][]);
+            accepting = new boolean[acceptingList.size()];
+            for (int i = 0; i < accepting.length; ++i)
+                accepting[i] = acceptingList.get(i);
+            if (!anchored) addFailureTransitions();
+        }
+
+        private static int[] newRow(final int symbolCount) {
+            final int[] row = new int[symbolCount];
+            Arrays.fill(row, -1);
+            return row;
+        }
+
+        /**
+         * Turns the trie into an Aho-Corasick automaton: processing the states breadth first, missing transitions are
+         * replaced by the transition of the failure state - the state of the longest proper suffix that is in the
+         * trie.
+         */
+        private void addFailureTransitions() {
+            final int[] failure = new int[transitions.length];
+            final Deque<Integer> queue = new ArrayDeque<>();
+            for (int symbol = 0; symbol < transitions[0].length; ++symbol) {
+                final int next = transitions[0][symbol];
+                if (next < 0) transitions[0][symbol] = 0;
+                else queue.add(next);
+            }
+            while (!queue.isEmpty()) {
+                final int state = queue.remove();
+                accepting[state] |= accepting[failure[state]];
+                for (int symbol = 0; symbol < transitions[state].length; ++symbol) {
+                    final int next = transitions[state][symbol];
+                    if (next < 0) {
+                        transitions[state][symbol] = transitions[failure[state]][symbol];
+                    } else {
+                        failure[next] = transitions[failure[state]][symbol];
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+
+        /** The symbol number of c, or -1 if it does not occur in the words. */
+        private int symbol(final char c) {
+            if (c < 128) return asciiSymbols[c];
+            final int index = Arrays.binarySearch(otherChars, c);
+            return index < 0 ? -1 : asciiSymbolCount + index;
+        }
+
+        boolean matches(final String name) {
+            int state = 0;
+            if (accepting[state]) return true;
+            for (int i = 0; i < name.length(); ++i) {
+                final int symbol = symbol(name.charAt(i));
+                if (symbol < 0) {
+                    if (anchored) return false;
+                    state = 0;
+                } else {
+                    state = transitions[state][symbol];
+                    if (state < 0) return false;
+                }
+                if (accepting[state]) return true;
+            }
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package net.stoerr.devtools.miscjavadevtools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recognizes stacktraces that were already logged, so that only the first occurrence needs to be logged in full and
+ * later occurrences can be logged as a short reference like <code>trace #3f2a9c0d4e5b6a71 (seen 4711x)</code>. The
+ * traces are identified by a 64 bit fingerprint of their frames; the counts are kept for the most recently seen
+ * fingerprints only. Use e.g.<br/>
+ * <code>Occurrence occurrence = DEDUPLICATOR.register(trace);<br/>
+ * if (occurrence.isFirst()) LOGGER.debug("Blabla " + occurrence, trace);<br/>
+ * else LOGGER.debug("Blabla " + occurrence);</code><br/>
+ * where trace is e.g. <code>new StacktraceForLogging().withCleanedStacktrace()</code>.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class StacktraceDeduplicator {
+
+    private final Map<Long, long[]> counts;
+
+    /** @param maxSize the maximum number of fingerprints to remember; the least recently seen ones are forgotten. */
+    public StacktraceDeduplicator(final int maxSize) {
+        counts = new LinkedHashMap<Long, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, long[]> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /** Counts an occurrence of the stacktrace of throwable. */
+    public Occurrence register(final Throwable throwable) {
+        return register(throwable.getStackTrace());
+    }
+
+    /** Counts an occurrence of the stacktrace. */
+    public Occurrence register(final StackTraceElement[] stacktrace) {
+        final long fingerprint = fingerprint(stacktrace);
+        final long count;
+        synchronized (counts) {
+            long[] counter = counts.get(fingerprint);
+            if (null == counter) {
+                counter = new long[1];
+                counts.put(fingerprint, counter);
+            }
+            count = ++counter[0];
+        }
+        return new Occurrence(fingerprint, count);
+    }
+
+    /** A 64 bit hash of the class names, method names and line numbers of the frames of stacktrace. */
+    public static long fingerprint(final StackTraceElement[] stacktrace) {
+        long hash = stacktrace.length;
+        for (final StackTraceElement element : stacktrace) {
+            hash = 31 * hash + element.getClassName().hashCode();
+            hash = 31 * hash + element.getMethodName().hashCode();
+            hash = 0x9E3779B97F4A7C15L * (hash + element.getLineNumber());
+        }
+        // final mixing step of SplitMix64 to spread all bits
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /** The result of registering a stacktrace. */
+    public static final class Occurrence {
+
+        private final long fingerprint;
+        private final long count;
+
+        Occurrence(final long fingerprint, final long count) {
+            this.fingerprint = fingerprint;
+            this.count = count;
+        }
+
+        /** True if the stacktrace was not seen before (or forgotten since), so it should be logged in full. */
+        public boolean isFirst() {
+            return 1 == count;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        /** The number of times the stacktrace was seen, including this one. */
+        public long getCount() {
+            return count;
+        }
+
+        /** A short reference to the stacktrace, e.g. <code>trace #3f2a9c0d4e5b6a71 (seen 4711x)</code>. */
+        @Override
+        public String toString() {
+            return "trace #" + Long.toHexString(fingerprint) + " (seen " + count + "x)";
+        }
+    }
+
+}
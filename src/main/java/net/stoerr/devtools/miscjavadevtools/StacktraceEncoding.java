@@ -0,0 +1,225 @@
+package net.stoerr.devtools.miscjavadevtools;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A compact representation of stacktraces, e.g. for queueing them in asynchronous log appenders: the class, method and
+ * file names are interned into a symbol table shared by all traces, and a trace becomes an int array with 4 entries per
+ * frame - the symbol ids of the class, method and file name (-1 for an unknown file) and the line number. With
+ * {@link Writer} and {@link Reader} the encoded traces can be written to and read from a binary log, in which each
+ * symbol is written only once. The module and classloader information of the frames is not kept.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class StacktraceEncoding {
+
+    /** The number of ints per frame in an encoded stacktrace. */
+    public static final int FRAME_SIZE = 4;
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    /** Guarded by this. */
+    private final List<String> symbols = new ArrayList<>();
+
+    /** The id of the symbol, which is added to the symbol table if necessary. */
+    public int intern(final String symbol) {
+        final Integer id = ids.get(symbol);
+        if (null != id) return id;
+        synchronized (this) {
+            final Integer existingId = ids.get(symbol);
+            if (null != existingId) return existingId;
+            final int newId = symbols.size();
+            symbols.add(symbol);
+            ids.put(symbol, newId);
+            return newId;
+        }
+    }
+
+    /** The symbol with the given id. */
+    public synchronized String symbol(final int id) {
+        return symbols.get(id);
+    }
+
+    /** The number of symbols in the table. */
+    public synchronized int size() {
+        return symbols.size();
+    }
+
+    /** Encodes the stacktrace of throwable. */
+    public int[] encode(final Throwable throwable) {
+        return encode(throwable.getStackTrace());
+    }
+
+    /** Encodes the stacktrace, with {@value #FRAME_SIZE} ints per frame. */
+    public int[] encode(final StackTraceElement[] stacktrace) {
+        final int[] encoded = new int[FRAME_SIZE * stacktrace.length];
+        int i = 0;
+        for (final StackTraceElement element : stacktrace) {
+            encoded[i++] = intern(element.getClassName());
+            encoded[i++] = intern(element.getMethodName());
+            encoded[i++] = null == element.getFileName() ? -1 : intern(element.getFileName());
+            encoded[i++] = element.getLineNumber();
+        }
+        return encoded;
+    }
+
+    /** Decodes a stacktrace encoded by {@link #encode(StackTraceElement[])}. */
+    public synchronized StackTraceElement[] decode(final int[] encoded) {
+        final StackTraceElement[] stacktrace = new StackTraceElement[encoded.length / FRAME_SIZE];
+        for (int frame = 0, i = 0; frame < stacktrace.length; ++frame, i += FRAME_SIZE) {
+            stacktrace[frame] = new StackTraceElement(symbols.get(encoded[i]), symbols.get(encoded[i + 1]),
+                    encoded[i + 2] < 0 ? null : symbols.get(encoded[i + 2]), encoded[i + 3]);
+        }
+        return stacktrace;
+    }
+
+    /** Record type of a symbol definition: id, length of the UTF-8 bytes, bytes. */
+    private static final int SYMBOL_RECORD = 0;
+    /** Record type of a stacktrace: number of frames, per frame class id, method id, file id + 1, zigzag line. */
+    private static final int TRACE_RECORD = 1;
+
+    /**
+     * Writes encoded stacktraces to a binary log. All numbers are written as variable length integers, and the symbols
+     * used by a trace are written immediately before the trace if they were not written before. Please use a buffered
+     * stream.
+     */
+    public static class Writer implements Closeable, Flushable {
+
+        private final StacktraceEncoding encoding;
+        private final OutputStream out;
+        private final BitSet writtenSymbols = new BitSet();
+
+        /** Writes stacktraces encoded with encoding to out. */
+        public Writer(final StacktraceEncoding encoding, final OutputStream out) {
+            this.encoding = encoding;
+            this.out = out;
+        }
+
+        /** Writes a stacktrace encoded by {@link StacktraceEncoding#encode(StackTraceElement[])}. */
+        public synchronized void write(final int[] encoded) throws IOException {
+            for (int i = 0; i < encoded.length; i += FRAME_SIZE) {
+                writeSymbolIfNew(encoded[i]);
+                writeSymbolIfNew(encoded[i + 1]);
+                writeSymbolIfNew(encoded[i + 2]);
+            }
+            writeVarint(TRACE_RECORD);
+            writeVarint(encoded.length / FRAME_SIZE);
+            for (int i = 0; i < encoded.length; i += FRAME_SIZE) {
+                writeVarint(encoded[i]);
+                writeVarint(encoded[i + 1]);
+                writeVarint(encoded[i + 2] + 1);
+                writeVarint((encoded[i + 3] << 1) ^ (encoded[i + 3] >> 31));
+            }
+        }
+
+        private void writeSymbolIfNew(final int id) throws IOException {
+            if (id < 0 || writtenSymbols.get(id)) return;
+            final byte[] bytes = encoding.symbol(id).getBytes(StandardCharsets.UTF_8);
+            writeVarint(SYMBOL_RECORD);
+            writeVarint(id);
+            writeVarint(bytes.length);
+            out.write(bytes);
+            writtenSymbols.set(id);
+        }
+
+        /** Writes the unsigned value in groups of 7 bits, least significant first; the high bit marks continuation. */
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Reads the stacktraces written by a {@link Writer}. */
+    public static class Reader implements Closeable {
+
+        private final InputStream in;
+        private String[] symbols = new String[64];
+
+        public Reader(final InputStream in) {
+            this.in = in;
+        }
+
+        /** The next stacktrace, or null at the end of the stream. */
+        public StackTraceElement[] read() throws IOException {
+            while (true) {
+                final int first = in.read();
+                if (first < 0) return null;
+                final int recordType = readVarint(first);
+                if (SYMBOL_RECORD == recordType) {
+                    readSymbol();
+                } else if (TRACE_RECORD == recordType) {
+                    final StackTraceElement[] stacktrace = new StackTraceElement[readVarint(in.read())];
+                    for (int i = 0; i < stacktrace.length; ++i) {
+                        final String className = symbol(readVarint(in.read()));
+                        final String methodName = symbol(readVarint(in.read()));
+                        final int fileId = readVarint(in.read()) - 1;
+                        final int zigzagLine = readVarint(in.read());
+                        stacktrace[i] = new StackTraceElement(className, methodName, fileId < 0 ? null
+                                : symbol(fileId), (zigzagLine >>> 1) ^ -(zigzagLine & 1));
+                    }
+                    return stacktrace;
+                } else {
+                    throw new IOException("Unknown record type " + recordType);
+                }
+            }
+        }
+
+        private void readSymbol() throws IOException {
+            final int id = readVarint(in.read());
+            final byte[] bytes = new byte[readVarint(in.read())];
+            int read = 0;
+            while (read < bytes.length) {
+                final int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0) throw new EOFException();
+                read += count;
+            }
+            if (id >= symbols.length) symbols = Arrays.copyOf(symbols, Math.max(id + 1, 2 * symbols.length));
+            symbols[id] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private String symbol(final int id) throws IOException {
+            if (id >= symbols.length || null == symbols[id]) throw new IOException("Undefined symbol " + id);
+            return symbols[id];
+        }
+
+        /** Reads a varint whose first byte was already read. */
+        private int readVarint(int b) throws IOException {
+            int value = 0;
+            for (int shift = 0;; shift += 7) {
+                if (b < 0) throw new EOFException();
+                value |= (b & 0x7F) << shift;
+                if (0 == (b & 0x80)) return value;
+                b = in.read();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
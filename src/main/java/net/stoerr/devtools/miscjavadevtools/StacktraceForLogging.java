@@ -1,8 +1,13 @@
 package net.stoerr.devtools.miscjavadevtools;
 
+import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Used for logging purposes whenever a stacktrace should be logged but no exception should be thrown.
@@ -20,44 +25,229 @@ public class StacktraceForLogging extends Exception {
         super("Stacktrace for logging purposes - this exception is not thrown.");
     }
 
-    private static final Pattern DEFAULT_CLEANUP_PATTERN = Pattern.compile("\\$|Cglib|cglib.proxy|java.lang.reflect|org.springframework.aop|org.apache.catalina|net.bull.javamelody|sun.reflect");
+    /** Creates an instance without stacktrace, which ignores setStackTrace. */
+    private StacktraceForLogging(final String message) {
+        super(message, null, false, false);
+    }
+
+    /**
+     * Returned by {@link Sampler} if a stacktrace is not sampled. Since it is shared, please do not call
+     * {@link #initCause(Throwable)} on it.
+     */
+    public static final StacktraceForLogging NOT_SAMPLED = new StacktraceForLogging(
+            "Stacktrace for logging purposes was not sampled - this exception is not thrown.");
+
+    /**
+     * Captures the stacktrace of the caller lazily: the frames are collected with a {@link StackWalker}, which stops
+     * after maxDepth frames, and are only converted to {@link StackTraceElement}s when the stacktrace is actually
+     * requested, e.g. by the logger rendering it. Much cheaper than the full stacktrace of
+     * <code>new StacktraceForLogging()</code> if the logger discards the message. Use e.g.<br/>
+     * <code>LOGGER.debug("Blabla", StacktraceForLogging.lazy(20));</code>
+     */
+    public static StacktraceForLogging lazy(final int maxDepth) {
+        return new Lazy(null, maxDepth);
+    }
+
+    /**
+     * Like {@link #lazy(int)}, but the frames dropped by {@link ClassNameFilter#defaultCleanup()} are already skipped
+     * while walking the stack, as in {@link #withCleanedStacktrace()}. maxDepth counts only the frames that are kept.
+     */
+    public static StacktraceForLogging lazyCleaned(final int maxDepth) {
+        return new Lazy(DEFAULT_CLEANUP_FILTER, maxDepth);
+    }
+
+    /**
+     * Like {@link #lazy(int)}, but the frames dropped by filter are already skipped while walking the stack.
+     * maxDepth counts only the frames that are kept.
+     */
+    public static StacktraceForLogging lazy(final ClassNameFilter filter, final int maxDepth) {
+        return new Lazy(filter, maxDepth);
+    }
+
+    private static final ClassNameFilter DEFAULT_CLEANUP_FILTER = ClassNameFilter.defaultCleanup();
 
     /** Cleans out all lines that do *not* start with <code>de.</code> */
-    private static final Pattern ONLY_DE_LINES_CLEANUP_PATTERN = Pattern.compile("^(?!de\\.)|\\$");
+    private static final ClassNameFilter ONLY_DE_LINES_FILTER = new ClassNameFilter().withRequiredPrefixes("de.")
+            .withDroppedSubstrings("$");
 
     /**
-     * Removes the annoying stacktrace lines from AspectJ / CGLib / reflection / Tomcat:
-     * {@value #DEFAULT_CLEANUP_PATTERN}.
+     * Removes the annoying stacktrace lines from AspectJ / CGLib / reflection / Tomcat - see
+     * {@link ClassNameFilter#defaultCleanup()}.
      * @return this
      */
     public StacktraceForLogging withCleanedStacktrace() {
-        cleanupStacktrace(DEFAULT_CLEANUP_PATTERN);
+        cleanupStacktrace(DEFAULT_CLEANUP_FILTER);
+        return this;
+    }
+
+    /**
+     * Removes all stacktrace lines whose class is dropped by filter. Please reuse the filter, since it caches its
+     * verdicts.
+     * @return this
+     */
+    public StacktraceForLogging withCleanedStacktrace(final ClassNameFilter filter) {
+        cleanupStacktrace(filter);
         return this;
     }
 
     /**
-     * Leaves only lines starting with <code>de.</code> in the stacktrace: {@value #ONLY_DE_LINES_CLEANUP_PATTERN}.
+     * Leaves only lines starting with <code>de.</code> in the stacktrace, except for inner classes.
      * @return this
      */
     public StacktraceForLogging withOnlyDeLines() {
-        cleanupStacktrace(ONLY_DE_LINES_CLEANUP_PATTERN);
+        cleanupStacktrace(ONLY_DE_LINES_FILTER);
         return this;
     }
 
-    /** Removes all lines where the class does not correspond to cleanupPattern */
-    private void cleanupStacktrace(Pattern cleanupPattern) {
-        List<StackTraceElement> lines = new ArrayList<>();
-        boolean cleaned = false;
-        for (StackTraceElement element : getStackTrace()) {
-            if (!cleanupPattern.matcher(element.getClassName()).find()) {
-                lines.add(element);
-                cleaned = true;
-            }
+    /** Removes all lines where the class is not accepted by the filter, and marks the stacktrace as cleaned. */
+    private void cleanupStacktrace(final ClassNameFilter filter) {
+        final StackTraceElement[] elements = getStackTrace();
+        final StackTraceElement[] lines = new StackTraceElement[elements.length + 1];
+        int count = 1;
+        for (final StackTraceElement element : elements) {
+            if (filter.accepts(element.getClassName())) lines[count++] = element;
+        }
+        if (count <= elements.length) { // something was removed
+            lines[0] = cleanedMarker(getClass());
+            setStackTrace(Arrays.copyOf(lines, count));
+        }
+    }
+
+    private static StackTraceElement cleanedMarker(final Class<?> clazz) {
+        return new StackTraceElement(clazz.toString(), "--stacktrace-was-cleaned-up--",
+                "StacktraceForLogging.java", 0);
+    }
+
+    /**
+     * Skips the expensive {@link #fillInStackTrace()} and walks only the needed part of the stack instead. Since
+     * {@link Throwable#printStackTrace()} does not use {@link #getStackTrace()}, we materialize the stacktrace there,
+     * too. (If this is the cause of another exception, getStackTrace() should be called before printing that.)
+     */
+    private static final class Lazy extends StacktraceForLogging {
+
+        private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.SHOW_REFLECT_FRAMES);
+
+        private static final String OWN_CLASS = StacktraceForLogging.class.getName();
+
+        private transient List<StackWalker.StackFrame> frames;
+
+        private final boolean cleaned;
+
+        Lazy(final ClassNameFilter filter, final int maxDepth) {
+            final boolean[] skipped = new boolean[1];
+            frames = WALKER.walk(s -> s.dropWhile(frame -> isOwnClass(frame.getClassName())).filter(frame -> {
+                if (null == filter || filter.accepts(frame.getClassName())) return true;
+                skipped[0] = true;
+                return false;
+            }).limit(maxDepth).collect(Collectors.toList()));
+            cleaned = skipped[0];
+        }
+
+        private static boolean isOwnClass(final String className) {
+            return className.equals(OWN_CLASS) || className.startsWith(OWN_CLASS + "$");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+
+        /** Converts the frames into the stacktrace, if that was not done yet. */
+        private synchronized void materialize() {
+            if (null == frames) return;
+            final List<StackTraceElement> lines = new ArrayList<>(frames.size() + 1);
+            if (cleaned) lines.add(cleanedMarker(getClass()));
+            for (final StackWalker.StackFrame frame : frames)
+                lines.add(frame.toStackTraceElement());
+            frames = null;
+            setStackTrace(lines.toArray(new StackTraceElement[lines.size()]));
+        }
+
+        @Override
+        public StackTraceElement[] getStackTrace() {
+            materialize();
+            return super.getStackTrace();
+        }
+
+        @Override
+        public void printStackTrace(final PrintStream s) {
+            materialize();
+            super.printStackTrace(s);
+        }
+
+        @Override
+        public void printStackTrace(final PrintWriter s) {
+            materialize();
+            super.printStackTrace(s);
+        }
+
+        private Object writeReplace() {
+            materialize();
+            return this;
+        }
+    }
+
+    /**
+     * Captures stacktraces only for some of the calls, so that stacktrace logging can be left switched on under full
+     * load: either every n-th call, or at most k calls per second. The other calls return the stackless placeholder
+     * {@link StacktraceForLogging#NOT_SAMPLED} without any capture cost. Keep one sampler per call site in a static
+     * field, e.g.<br/>
+     * <code>private static final StacktraceForLogging.Sampler SAMPLER = StacktraceForLogging.Sampler.perSecond(10);
+     * <br/>LOGGER.debug("Blabla", SAMPLER.capture(FILTER, 30));</code><br/>
+     * The samplers are lock free and can be used from any number of threads.
+     */
+    public abstract static class Sampler {
+
+        /** Samples the first of every n calls. */
+        public static Sampler oneIn(final long n) {
+            if (n <= 0) throw new IllegalArgumentException("Need positive n but got " + n);
+            final AtomicLong calls = new AtomicLong();
+            return new Sampler() {
+                @Override
+                public boolean sample() {
+                    return 0 == calls.getAndIncrement() % n;
+                }
+            };
+        }
+
+        /**
+         * Samples at most k calls per second, with bursts of up to k calls. This is a token bucket implemented as
+         * generic cell rate algorithm: we keep the theoretical arrival time of the next call, which is moved by 1/k
+         * seconds per sampled call. A call is sampled unless that would move it more than a second into the future.
+         */
+        public static Sampler perSecond(final int k) {
+            if (k <= 0) throw new IllegalArgumentException("Need positive k but got " + k);
+            final long interval = TimeUnit.SECONDS.toNanos(1) / k;
+            final long burstTolerance = TimeUnit.SECONDS.toNanos(1) - interval;
+            final AtomicLong theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+            return new Sampler() {
+                @Override
+                public boolean sample() {
+                    while (true) {
+                        final long now = System.nanoTime();
+                        final long arrivalTime = theoreticalArrivalTime.get();
+                        final long start = arrivalTime - now > 0 ? arrivalTime : now;
+                        if (start - now > burstTolerance) return false;
+                        if (theoreticalArrivalTime.compareAndSet(arrivalTime, start + interval)) return true;
+                    }
+                }
+            };
         }
-        if (cleaned) {
-            lines.add(0, new StackTraceElement(getClass().toString(), "--stacktrace-was-cleaned-up--",
-                    "StacktraceForLogging.java", 0));
+
+        /** Decides whether the current call is sampled. */
+        public abstract boolean sample();
+
+        /** The full stacktrace of the caller, if sampled, otherwise {@link StacktraceForLogging#NOT_SAMPLED}. */
+        public StacktraceForLogging capture() {
+            return sample() ? new Lazy(null, Integer.MAX_VALUE) : NOT_SAMPLED;
+        }
+
+        /**
+         * If sampled, the stacktrace of the caller like {@link StacktraceForLogging#lazy(ClassNameFilter, int)},
+         * otherwise {@link StacktraceForLogging#NOT_SAMPLED}.
+         */
+        public StacktraceForLogging capture(final ClassNameFilter filter, final int maxDepth) {
+            return sample() ? new Lazy(filter, maxDepth) : NOT_SAMPLED;
         }
-        setStackTrace(lines.toArray(new StackTraceElement[lines.size()]));
     }
 }
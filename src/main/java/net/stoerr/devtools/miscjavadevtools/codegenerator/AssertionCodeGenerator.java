@@ -1,16 +1,10 @@
 package net.stoerr.devtools.miscjavadevtools.codegenerator;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.Map;
 
-import org.apache.commons.lang3.reflect.FieldUtils;
-
 /**
  * Codegenerator to generate assert statements that the contents of a Java Bean are as given in a template. Use
  * AssertionCodeGenerator.printAssertions(somebean) in a unittest and grasp the generated assert statements from
@@ -40,28 +34,16 @@ public class AssertionCodeGenerator {
         if (null == bean) { return "assertNull(" + variablename + ");\n"; }
         final StringBuilder buf = new StringBuilder("import static org.junit.Assert.*;\n\n");
         final StringBuilder skipped = new StringBuilder();
-        final Method[] methods = bean.getClass().getMethods();
-        Arrays.sort(methods, new Comparator<Method>() {
-            @Override
-            public int compare(Method o1, Method o2) {
-                return o1.getName().compareTo(o2.getName());
-            }
-        });
-        for (final Method method : methods) {
-            if (method.getParameterTypes().length != 0 || "getClass".equals(method.getName())) {
-                continue;
-            }
-            if (!method.getName().startsWith("get") && !method.getName().startsWith("is")) {
-                continue;
-            }
-            if (skipField(bean.getClass(), method)) {
+        for (final BeanProperty getter : BeanDescriptor.forClass(bean.getClass()).getGetters()) {
+            final Method method = getter.getMethod();
+            if (getter.isTransient()) {
                 skipped.append("// Skipping " + method.getName() + " since field is transient.\n");
                 continue;
             }
             Object value;
             try {
-                value = method.invoke(bean);
-                final String statement = makeStatement(variablename, method.getName(), value, method.getReturnType())
+                value = getter.get(bean);
+                final String statement = makeStatement(variablename, method.getName(), value, getter.getRawType())
                         + ";\n";
                 if (statement.startsWith("//")) {
                     skipped.append(statement);
@@ -75,22 +57,6 @@ public class AssertionCodeGenerator {
         return buf.toString() + skipped.toString();
     }
 
-    /**
-     * Checks whether a field is transient. It is probably calculated and we do not need to check it.
-     */
-    private static boolean skipField(final Class<?> beanclass, final Method method) {
-        String fieldname = method.getName();
-        if (fieldname.startsWith("get")) {
-            fieldname = fieldname.substring(3);
-        } else {
-            fieldname = fieldname.substring(2); // is...
-        }
-        fieldname = fieldname.substring(0, 1).toLowerCase() + fieldname.substring(1);
-        final Field field = FieldUtils.getField(beanclass, fieldname);
-        if (null != field) { return Modifier.isTransient(field.getModifiers()); }
-        return false; // can't determine corresponding field
-    }
-
     static String makeStatement(final String variablename, final String methodname, final Object value,
             final Class<?> valueClazz) {
         final String accessor = variablename + "." + methodname + "()";
@@ -1,36 +1,91 @@
 package net.stoerr.devtools.miscjavadevtools.codegenerator;
 
-import java.lang.reflect.Field;
+import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.exception.ContextedRuntimeException;
-import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.commons.lang3.reflect.TypeUtils;
-import org.apache.commons.lang3.tuple.Pair;
 
 /**
- * Creates Java code that recreates a given Java Bean, or several.
+ * Creates Java code that recreates a given Java Bean, or several. By default the code is collected in memory; for large
+ * object graphs it can be streamed to an {@link Appendable} with {@link #BeanCodeGenerator(Appendable)} instead.
  * @author Hans-Peter Störr www.stoerr.net
  * @see ValueCodeGenerator
  */
 public class BeanCodeGenerator {
 
-    private final StringBuilder imports = new StringBuilder();
-    private final StringBuilder code = new StringBuilder();
+    private final ImportRegistry imports = new ImportRegistry();
+    private boolean sortedImports;
+    private final Appendable code;
+    /** True if the code is written to an Appendable given by the user, not collected in memory. */
+    private final boolean streaming;
     private final Set<String> usedNames = new HashSet<>();
+    /** For each base name the next number to try when making a unique variable name. */
+    private final Map<String, int[]> nextNameNumbers = new HashMap<>();
+    private NamingStrategy namingStrategy = NamingStrategy.TYPE_NAME;
+    /** The pending work while coding an object graph, top of stack first. */
+    private final Deque<Task> tasks = new ArrayDeque<>();
+    /** The calls for objects that were already determined in parallel by {@link #makeBeans(List, ExecutorService)}. */
+    private final Map<Object, List<Call>> prepared = new IdentityHashMap<>();
+    /** Maps the already coded objects (by identity) to the actually used name. */
+    private final Map<Object, String> objectToNameMap = new IdentityHashMap<>();
+
+    /** Creates a generator that collects the code in memory - see {@link #getCode()}. */
+    public BeanCodeGenerator() {
+        this.code = new StringBuilder();
+        this.streaming = false;
+    }
+
+    /**
+     * Creates a generator that writes the code incrementally to code as it is generated, so that the memory needed does
+     * not grow with the size of the code. The imports are only known at the end; write them afterwards with
+     * {@link #writeImports(Appendable)}, e.g. into a separate header file. For a
+     * {@link java.nio.channels.WritableByteChannel} use {@link java.nio.channels.Channels#newWriter} and flush it at
+     * the end.
+     * @param code where the code is written to, not null
+     */
+    public BeanCodeGenerator(final Appendable code) {
+        this.code = code;
+        this.streaming = true;
+    }
+
     /**
-     * Maps the class and the hashcode of already coded beans to the actually used name. We naively assume that there
-     * are no objects with the same hashcode.
+     * Makes {@link #getImports()} and {@link #writeImports(Appendable)} return the imports sorted and grouped by top
+     * level package instead of in the order the classes were first used.
+     * @return this
      */
-    private final Map<Pair<Class<Object>, Integer>, String> objectToNameMap = new HashMap<>();
+    public BeanCodeGenerator withSortedImports() {
+        sortedImports = true;
+        return this;
+    }
+
+    /**
+     * Determines the base of the names of generated variables; a number is appended to make them unique. Default is
+     * {@link NamingStrategy#TYPE_NAME}.
+     * @return this
+     */
+    public BeanCodeGenerator withNamingStrategy(final NamingStrategy namingStrategy) {
+        this.namingStrategy = namingStrategy;
+        return this;
+    }
 
     /**
      * Tries to create code to reproduce bean. If the bean is not a correct Java bean, it will silently return
@@ -52,124 +107,408 @@ public class BeanCodeGenerator {
         return beanName;
     }
 
+    /**
+     * Creates code for several beans, like calling {@link #makeBean(Object, String)} with autogenerated names for each
+     * of them in turn, but using all processors.
+     * @see #makeBeans(List, ExecutorService)
+     */
+    public List<String> makeBeans(final List<?> beans) {
+        final ExecutorService executor = new ForkJoinPool();
+        try {
+            return makeBeans(beans, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Creates code for several beans, like calling {@link #makeBean(Object, String)} with autogenerated names for each
+     * of them in turn. The properties of the objects reachable from each bean are read and the simple values coded in
+     * parallel, one task per bean, with executor. Then the names are assigned and the code is written sequentially, so
+     * that the result is exactly the same as that of the sequential calls. The object graphs must not be modified
+     * meanwhile.
+     * @param beans Java Beans, not null
+     * @return the names of the beans in the {@link #getCode()}
+     */
+    public List<String> makeBeans(final List<?> beans, final ExecutorService executor) {
+        final List<Callable<Map<Object, List<Call>>>> preparations = new ArrayList<>();
+        for (final Object bean : beans)
+            preparations.add(new Callable<Map<Object, List<Call>>>() {
+                @Override
+                public Map<Object, List<Call>> call() {
+                    return prepare(bean);
+                }
+            });
+        try {
+            for (final Future<Map<Object, List<Call>>> preparation : executor.invokeAll(preparations))
+                prepared.putAll(preparation.get());
+            final List<String> names = new ArrayList<>();
+            for (final Object bean : beans)
+                names.add(makeBean(bean, null));
+            return names;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContextedRuntimeException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new ContextedRuntimeException(e.getCause());
+        } finally {
+            prepared.clear();
+        }
+    }
+
     /** The required imports for the {@link #getCode()}. */
     public String getImports() {
-        return imports.toString();
+        return sortedImports ? imports.getSortedImports() : imports.getImports();
+    }
+
+    /** Writes the required imports for the code to out. */
+    public void writeImports(final Appendable out) throws IOException {
+        imports.writeImports(out, sortedImports);
     }
 
-    /** The collected code for everything. */
-    public String getCode() {
+    /**
+     * The collected code for everything.
+     * @throws IllegalStateException if the code was written to an Appendable
+     */
+    public String getCode() throws IllegalStateException {
+        if (streaming)
+            throw new IllegalStateException("The code was written to the Appendable given to the constructor");
         return code.toString();
     }
 
+    /** The imports and the code, or only the imports if the code was written to an Appendable. */
     @Override
     public String toString() {
-        return getImports() + getCode();
-    }
-
-    private Pair<Class<Object>, Integer> objectKey(final Object bean) {
-        final Class<Object> clazz = (Class<Object>) bean.getClass();
-        return Pair.of(clazz, System.identityHashCode(bean));
+        return streaming ? getImports() : getImports() + getCode();
     }
 
     /**
-     * Generates code for recreating a Java Bean.
+     * Generates code for recreating a Java Bean and everything reachable from it. The object graph is traversed with an
+     * explicit stack of {@link Task}s instead of recursion, so that arbitrarily deep graphs (e.g. long linked lists) do
+     * not overflow the thread stack.
      * @param object the object for which we want to create code
      * @param type
      * @param preferredName if not null, we use this variable name for the object, else we autogenerate something
      * @return the actual code if object is creatable with a simple expression, or a variablename where the object is
      *         stored - preferredName if it is not null
      */
-    private String codeObject(final Object object, Type type, final String preferredName)
-            throws IllegalArgumentException, ReflectiveOperationException {
-        if (!(object instanceof Collection) && !(object instanceof Map)) try {
-            return ValueCodeGenerator.makeExpression(object, type, false);
-        } catch (final IllegalArgumentException e) { // fall back to other
-                // strategies.
-            }
+    private String codeObject(final Object object, final Type type, final String preferredName)
+            throws IllegalArgumentException, IOException {
+        try {
+            final String result = startObject(object, type, preferredName, null);
+            while (!tasks.isEmpty())
+                tasks.peek().step();
+            return result;
+        } finally {
+            tasks.clear();
+        }
+    }
+
+    /**
+     * Returns the expression for object if it is a simple value. Otherwise this writes the declaration of a variable
+     * for it and pushes a task that generates the code filling the object.
+     * @param propertyName the property object is the value of, if any - for the {@link NamingStrategy}
+     * @return the expression or variable name for object
+     */
+    private String startObject(final Object object, final Type type, final String preferredName,
+            final String propertyName) throws IllegalArgumentException, IOException {
+        final String expression = simpleExpression(object, type);
+        if (null != expression) return expression;
+        return declareObject(object, type, preferredName, propertyName);
+    }
+
+    /** The expression creating object if it is a simple value, otherwise null. */
+    private static String simpleExpression(final Object object, final Type type) {
+        if (object instanceof Collection || object instanceof Map || !ValueCodeGenerator.isSupported(object, type))
+            return null;
+        return ValueCodeGenerator.makeExpression(object, type, false);
+    }
 
+    /**
+     * Writes the declaration of a variable for an object that is not a simple value, and pushes a task that generates
+     * the code filling the object.
+     * @return the variable name for object
+     */
+    private String declareObject(final Object object, Type type, final String preferredName,
+            final String propertyName) throws IOException {
         if (null == type) type = object.getClass();
-        appendImport(type);
+        imports.reference(TypeUtils.getRawType(type, type));
         code.append("\n");
 
-        final Pair<Class<Object>, Integer> key = objectKey(object);
-        String beanName = objectToNameMap.get(key);
+        String beanName = objectToNameMap.get(object);
         if (null != beanName) if (null != preferredName && !preferredName.equals(beanName)) {
-            code.append(importedJavaType(type)).append(" ").append(preferredName).append(" = ").append(beanName);
-            objectToNameMap.put(key, beanName);
+            code.append(importedJavaType(type)).append(" ").append(preferredName).append(" = ").append(beanName)
+                    .append(";\n");
             return preferredName;
         } else return beanName;
 
-        if (null != preferredName) beanName = preferredName;
-        else {
-            beanName = makeUniqueName(type);
-            beanName = beanName.substring(0, 1).toLowerCase() + beanName.substring(1);
-        }
-        objectToNameMap.put(key, beanName);
+        if (null != preferredName) {
+            beanName = preferredName;
+            usedNames.add(preferredName);
+        } else beanName = makeUniqueName(namingStrategy.baseName(TypeUtils.getRawType(type, type), propertyName));
+        objectToNameMap.put(object, beanName);
 
-        if (object instanceof List) codeList((List<?>) object, type, beanName);
-        else if (object instanceof Map) codeMap((Map<?, ?>) object, type, beanName);
-        else codeJavaBean(object, type, beanName);
+        codeNoargConstructor(object, type, beanName);
+        final List<Call> preparedCalls = prepared.get(object);
+        tasks.push(new FillTask(beanName, null != preparedCalls ? new PreparedCalls(preparedCalls) : calls(object)));
         return beanName;
     }
 
-    private String makeUniqueName(final Type type) {
-        int i = 1;
-        final String basename = TypeUtils.getRawType(type, type).getSimpleName();
+    /** Appends the next free number to basename; we remember the number per basename so this is O(1) amortized. */
+    private String makeUniqueName(final String basename) {
+        int[] nextNumber = nextNameNumbers.get(basename);
+        if (null == nextNumber) {
+            nextNumber = new int[] { 1 };
+            nextNameNumbers.put(basename, nextNumber);
+        }
         while (true) {
-            final String name = basename + i;
-            if (!usedNames.contains(name)) {
-                usedNames.add(name);
-                return name;
+            final String name = basename + nextNumber[0]++;
+            if (usedNames.add(name)) return name;
+        }
+    }
+
+    /** Determines the names of the variables generated for the objects. */
+    public interface NamingStrategy {
+
+        /**
+         * The base of the variable name for an object; a number is appended to make it unique.
+         * @param type the (declared) type of the object
+         * @param propertyName the name of the bean property the object is the value of; null for roots and for
+         *            elements of lists and maps
+         */
+        String baseName(Class<?> type, String propertyName);
+
+        /** Names the variables after their type, e.g. <code>arrayList1</code>. */
+        NamingStrategy TYPE_NAME = new NamingStrategy() {
+            @Override
+            public String baseName(final Class<?> type, final String propertyName) {
+                final String name = type.getSimpleName();
+                if (name.isEmpty()) return "object";
+                return name.substring(0, 1).toLowerCase() + name.substring(1);
             }
-            ++i;
+        };
+
+        /**
+         * Names the variables after the property they are the value of, e.g. <code>address1</code>, and falls back to
+         * {@link #TYPE_NAME} for roots and elements of lists and maps.
+         */
+        NamingStrategy PROPERTY_NAME = new NamingStrategy() {
+            @Override
+            public String baseName(final Class<?> type, final String propertyName) {
+                if (null != propertyName) return propertyName;
+                return TYPE_NAME.baseName(type, null);
+            }
+        };
+    }
+
+    /** A pending piece of work in the traversal of the object graph, kept on {@link #tasks}. */
+    private interface Task {
+        /** Does the next bit of work; pops this task from {@link #tasks} when it is done. */
+        void step() throws IOException;
+    }
+
+    /**
+     * Writes a statement like <code>bean.setX(arg)</code> or <code>map.put(arg1, arg2)</code>. The arguments are coded
+     * one by one first; if they are beans, their code is completely written before the statement.
+     */
+    private final class StatementTask implements Task {
+        private final String beanName;
+        private final Call call;
+        private final String[] argumentCodes;
+        private int next;
+
+        StatementTask(final String beanName, final Call call) {
+            this.beanName = beanName;
+            this.call = call;
+            this.argumentCodes = new String[call.arguments.length];
+        }
+
+        @Override
+        public void step() throws IOException {
+            if (next < argumentCodes.length) {
+                final Object argument = call.arguments[next];
+                final Type type = call.types[next];
+                if (null == call.expressions)
+                    argumentCodes[next] = startObject(argument, type, null, call.propertyName);
+                else if (null != call.expressions[next]) argumentCodes[next] = call.expressions[next];
+                else argumentCodes[next] = declareObject(argument, type, null, call.propertyName);
+                ++next;
+                return;
+            }
+            tasks.pop();
+            code.append(beanName).append(call.method).append("(");
+            for (int i = 0; i < argumentCodes.length; ++i) {
+                if (0 < i) code.append(", ");
+                code.append(argumentCodes[i]);
+            }
+            code.append(");\n");
+        }
+    }
+
+    /** Pushes one {@link StatementTask} after the other until the object is completely filled. */
+    private final class FillTask implements Task {
+        private final String beanName;
+        private final CallSource calls;
+
+        FillTask(final String beanName, final CallSource calls) {
+            this.beanName = beanName;
+            this.calls = calls;
+        }
+
+        @Override
+        public void step() {
+            final Call call = calls.next();
+            if (null == call) tasks.pop();
+            else tasks.push(new StatementTask(beanName, call));
+        }
+    }
+
+    /**
+     * A method call filling an object, e.g. <code>.setX(value)</code>. Immutable, so that it can be prepared in
+     * parallel by {@link #prepare(Object)}.
+     */
+    private static final class Call {
+        final String method;
+        final Object[] arguments;
+        final Type[] types;
+        final String propertyName;
+        /** The expressions for the arguments that are simple values, null for the others; null if not determined. */
+        final String[] expressions;
+
+        Call(final String method, final Object[] arguments, final Type[] types, final String propertyName) {
+            this(method, arguments, types, propertyName, null);
+        }
+
+        private Call(final String method, final Object[] arguments, final Type[] types, final String propertyName,
+                final String[] expressions) {
+            this.method = method;
+            this.arguments = arguments;
+            this.types = types;
+            this.propertyName = propertyName;
+            this.expressions = expressions;
+        }
+
+        /** This call with the expressions for the simple arguments determined. */
+        Call withExpressions() {
+            final String[] argumentExpressions = new String[arguments.length];
+            for (int i = 0; i < arguments.length; ++i)
+                argumentExpressions[i] = simpleExpression(arguments[i], types[i]);
+            return new Call(method, arguments, types, propertyName, argumentExpressions);
         }
     }
 
-    private void codeList(final List<?> list, final Type type, final String beanName)
-            throws ReflectiveOperationException {
-        codeNoargConstructor(list, type, beanName);
-        for (final Object object : list)
-            code.append(beanName).append(".add(").append(codeObject(object, null, null)).append(");\n");
+    /** The calls filling an object, one by one. */
+    private abstract static class CallSource {
+        /** The next call filling the object, null if there is none. */
+        abstract Call next();
     }
 
-    private void codeMap(final Map<?, ?> map, final Type type, final String beanName)
-            throws ReflectiveOperationException {
-        codeNoargConstructor(map, type, beanName);
-        for (final Entry<?, ?> entry : map.entrySet())
-            code.append(beanName).append(".put(").append(codeObject(entry.getKey(), null, null)).append(", ").append(
-                    codeObject(entry.getValue(), null, null)).append(");\n");
+    /** The calls filling object: add for lists, put for maps, setters for the non-null fields of beans. */
+    private static CallSource calls(final Object object) {
+        if (object instanceof List) return new ListCalls((List<?>) object);
+        else if (object instanceof Map) return new MapCalls((Map<?, ?>) object);
+        else return new JavaBeanCalls(object);
     }
 
-    private void codeJavaBean(final Object bean, final Type type, final String beanName) throws IllegalAccessException,
-            ReflectiveOperationException {
-        codeNoargConstructor(bean, type, beanName);
-        for (final Field field : FieldUtils.getAllFieldsList(bean.getClass())) {
-            final String name = field.getName();
-            final String upcaseName = name.substring(0, 1).toUpperCase() + name.substring(1);
-            final Object value = FieldUtils.readField(field, bean, true);
-            if (null == value) continue;
-            final String valueCode = codeObject(value, field.getGenericType(), null);
-            code.append(beanName).append(".set").append(upcaseName).append("(").append(valueCode).append(");\n");
+    private static final class ListCalls extends CallSource {
+        private final Iterator<?> elements;
+
+        ListCalls(final List<?> list) {
+            this.elements = list.iterator();
+        }
+
+        @Override
+        Call next() {
+            if (!elements.hasNext()) return null;
+            return new Call(".add", new Object[] { elements.next() }, new Type[1], null);
+        }
+    }
+
+    private static final class MapCalls extends CallSource {
+        private final Iterator<? extends Entry<?, ?>> entries;
+
+        MapCalls(final Map<?, ?> map) {
+            this.entries = map.entrySet().iterator();
+        }
+
+        @Override
+        Call next() {
+            if (!entries.hasNext()) return null;
+            final Entry<?, ?> entry = entries.next();
+            return new Call(".put", new Object[] { entry.getKey(), entry.getValue() }, new Type[2], null);
+        }
+    }
+
+    private static final class JavaBeanCalls extends CallSource {
+        private final Object bean;
+        private final Iterator<BeanProperty> properties;
+
+        JavaBeanCalls(final Object bean) {
+            this.bean = bean;
+            this.properties = BeanDescriptor.forClass(bean.getClass()).getFields().iterator();
+        }
+
+        @Override
+        Call next() {
+            while (properties.hasNext()) {
+                final BeanProperty property = properties.next();
+                final Object value = property.get(bean);
+                if (null == value) continue;
+                return new Call(".set" + property.getCapitalizedName(), new Object[] { value },
+                        new Type[] { property.getType() }, property.getName());
+            }
+            return null;
         }
     }
 
-    private void codeNoargConstructor(final Object bean, final Type type, final String beanName) {
-        code.append(importedJavaType(type)).append(" ").append(beanName).append(" = new ").append(
-                bean.getClass().getSimpleName()).append("();\n");
+    /** Replays calls prepared by {@link #prepare(Object)}. */
+    private static final class PreparedCalls extends CallSource {
+        private final Iterator<Call> calls;
+
+        PreparedCalls(final List<Call> calls) {
+            this.calls = calls.iterator();
+        }
+
+        @Override
+        Call next() {
+            return calls.hasNext() ? calls.next() : null;
+        }
+    }
+
+    /**
+     * Does the expensive part of coding root - reading the properties and generating the expressions for the simple
+     * values - for every object reachable from root, without touching the state of the generator. Thread safe.
+     * @return the calls filling each of the objects that are not simple values
+     */
+    private static Map<Object, List<Call>> prepare(final Object root) {
+        final Map<Object, List<Call>> prepared = new IdentityHashMap<>();
+        final Deque<Object> todo = new ArrayDeque<>();
+        if (null == simpleExpression(root, root.getClass())) todo.push(root);
+        while (!todo.isEmpty()) {
+            final Object object = todo.pop();
+            if (prepared.containsKey(object)) continue;
+            final List<Call> objectCalls = new ArrayList<>();
+            final CallSource source = calls(object);
+            for (Call call = source.next(); null != call; call = source.next()) {
+                call = call.withExpressions();
+                objectCalls.add(call);
+                for (int i = 0; i < call.arguments.length; ++i)
+                    if (null == call.expressions[i]) todo.push(call.arguments[i]);
+            }
+            prepared.put(object, objectCalls);
+        }
+        return prepared;
     }
 
-    private void appendImport(final Type type) {
-        final String name = TypeUtils.getRawType(type, type).getCanonicalName();
-        if (name.startsWith("java.lang")) return;
-        final String theimport = "import " + name + ";\n";
-        if (0 > imports.indexOf(theimport)) imports.append(theimport);
+    private void codeNoargConstructor(final Object bean, final Type type, final String beanName) throws IOException {
+        code.append(importedJavaType(type)).append(" ").append(beanName).append(" = new ")
+                .append(imports.reference(bean.getClass())).append("();\n");
     }
 
     /** Java source code form of type */
     private String importedJavaType(final Type type) {
-        appendImport(type);
-        final String sname = TypeUtils.getRawType(type, type).getSimpleName();
+        final String sname = imports.reference(TypeUtils.getRawType(type, type));
         if (type instanceof Class) return sname;
         else if (type instanceof ParameterizedType) {
             final ParameterizedType ptype = (ParameterizedType) type;
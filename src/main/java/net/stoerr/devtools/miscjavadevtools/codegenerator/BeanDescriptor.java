@@ -0,0 +1,201 @@
+package net.stoerr.devtools.miscjavadevtools.codegenerator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+/**
+ * The reflection metadata of a Java Bean class - sorted getters and setters and all fields - determined once per class
+ * and shared by {@link AssertionCodeGenerator}, {@link BeanCodeGenerator} and the SimpleBeanFiller. The descriptors are
+ * cached in a {@link ClassValue}, so they do not prevent unloading of the classloader of the bean class.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public final class BeanDescriptor {
+
+    private static final ClassValue<BeanDescriptor> DESCRIPTORS = new ClassValue<BeanDescriptor>() {
+        @Override
+        protected BeanDescriptor computeValue(final Class<?> type) {
+            return new BeanDescriptor(type);
+        }
+    };
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodHandle REFLECTIVE_INVOKE;
+    private static final MethodHandle INACCESSIBLE_FIELD;
+    static {
+        try {
+            REFLECTIVE_INVOKE = LOOKUP.findVirtual(Method.class, "invoke",
+                    MethodType.methodType(Object.class, Object.class, Object[].class));
+            INACCESSIBLE_FIELD = LOOKUP.findStatic(BeanDescriptor.class, "readInaccessibleField",
+                    MethodType.methodType(Object.class, Field.class, Object.class));
+        } catch (final ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final Comparator<Method> METHODNAMECOMPARATOR = new Comparator<Method>() {
+        @Override
+        public int compare(final Method o1, final Method o2) {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+
+    private final Class<?> beanClass;
+    private final List<BeanProperty> getters;
+    private final List<BeanProperty> setters;
+    /** Created lazily by {@link #getFields()}. */
+    private volatile List<BeanProperty> fields;
+
+    /** The (cached) descriptor for beanClass. */
+    public static BeanDescriptor forClass(final Class<?> beanClass) {
+        return DESCRIPTORS.get(beanClass);
+    }
+
+    private BeanDescriptor(final Class<?> beanClass) {
+        this.beanClass = beanClass;
+        final Method[] methods = beanClass.getMethods();
+        Arrays.sort(methods, METHODNAMECOMPARATOR);
+        final List<BeanProperty> getterList = new ArrayList<>();
+        final List<BeanProperty> setterList = new ArrayList<>();
+        for (final Method method : methods) {
+            final String methodName = method.getName();
+            final int parameterCount = method.getParameterTypes().length;
+            if (0 == parameterCount && !"getClass".equals(methodName)
+                    && (methodName.startsWith("get") || methodName.startsWith("is"))) {
+                final String capitalizedName = methodName.substring(methodName.startsWith("get") ? 3 : 2);
+                final MethodHandle handle = unreflect(method);
+                getterList.add(new BeanProperty(decapitalize(capitalizedName), capitalizedName, method,
+                        publicField(capitalizedName), method.getGenericReturnType(), method.getReturnType(),
+                        accessor(method, handle, GETTER_TYPE), handle));
+            } else if (1 == parameterCount && Modifier.isPublic(method.getModifiers())
+                    && methodName.startsWith("set")) {
+                final String capitalizedName = methodName.substring(3);
+                final MethodHandle handle = unreflect(method);
+                setterList.add(new BeanProperty(decapitalize(capitalizedName), capitalizedName, method,
+                        publicField(capitalizedName), method.getGenericParameterTypes()[0],
+                        method.getParameterTypes()[0], accessor(method, handle, SETTER_TYPE), handle));
+            }
+        }
+        this.getters = Collections.unmodifiableList(getterList);
+        this.setters = Collections.unmodifiableList(setterList);
+    }
+
+    /**
+     * The field properties, which we create only when needed, since making fields accessible is not possible e.g. for
+     * classes in modules that are not opened to us, and most users need only getters or setters.
+     */
+    private static List<BeanProperty> fieldProperties(final Class<?> beanClass) {
+        final List<BeanProperty> fieldList = new ArrayList<>();
+        for (final Field field : FieldUtils.getAllFieldsList(beanClass)) {
+            final MethodHandle accessor = field.trySetAccessible() ? fieldAccessor(field)
+                    : INACCESSIBLE_FIELD.bindTo(field);
+            final String name = field.getName();
+            fieldList.add(new BeanProperty(name, name.substring(0, 1).toUpperCase() + name.substring(1), null, field,
+                    field.getGenericType(), field.getType(), accessor, null));
+        }
+        return Collections.unmodifiableList(fieldList);
+    }
+
+    /** The public field corresponding to a property, if there is one. */
+    private Field publicField(final String capitalizedName) {
+        if (capitalizedName.isEmpty()) return null;
+        return FieldUtils.getField(beanClass, decapitalize(capitalizedName));
+    }
+
+    /**
+     * The handle for method with its exact type, made accessible if necessary (e.g. public method of a private class);
+     * null if we have no access to the method.
+     */
+    private static MethodHandle unreflect(final Method method) {
+        try {
+            return LOOKUP.unreflect(method);
+        } catch (final IllegalAccessException e) {
+            try {
+                method.setAccessible(true);
+                return LOOKUP.unreflect(method);
+            } catch (IllegalAccessException | RuntimeException e2) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The handle of {@link #unreflect(Method)} converted to the given type. If we have no access to the method we fall
+     * back to {@link Method#invoke(Object, Object...)}, which will report that problem when used.
+     */
+    private static MethodHandle accessor(final Method method, MethodHandle handle, final MethodType type) {
+        if (null == handle)
+            return REFLECTIVE_INVOKE.bindTo(method).asCollector(Object[].class, type.parameterCount() - 1).asType(type);
+        if (Modifier.isStatic(method.getModifiers())) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        return handle.asType(type);
+    }
+
+    /** A (Object)Object handle reading the (already accessible) field. */
+    private static MethodHandle fieldAccessor(final Field field) {
+        MethodHandle handle;
+        try {
+            handle = LOOKUP.unreflectGetter(field);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException("Bug: field should be accessible: " + field, e);
+        }
+        if (Modifier.isStatic(field.getModifiers())) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        return handle.asType(GETTER_TYPE);
+    }
+
+    /**
+     * The accessor for a field we cannot make accessible, e.g. in a module that is not opened to us: reading it throws
+     * the {@link java.lang.reflect.InaccessibleObjectException} explaining why.
+     */
+    private static Object readInaccessibleField(final Field field, final Object bean) throws IllegalAccessException {
+        field.setAccessible(true);
+        return field.get(bean);
+    }
+
+    private static String decapitalize(final String capitalizedName) {
+        if (capitalizedName.isEmpty()) return capitalizedName;
+        return capitalizedName.substring(0, 1).toLowerCase() + capitalizedName.substring(1);
+    }
+
+    /** The described class. */
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    /** The public getters (getX, isX without parameters, except getClass), sorted by method name. */
+    public List<BeanProperty> getGetters() {
+        return getters;
+    }
+
+    /** The public setters (setX with one parameter), sorted by method name. */
+    public List<BeanProperty> getSetters() {
+        return setters;
+    }
+
+    /**
+     * All fields of the class and its superclasses, as returned by {@link FieldUtils#getAllFieldsList(Class)}. They are
+     * already made accessible where possible; reading a field that cannot be made accessible (e.g. in JDK classes)
+     * throws a {@link java.lang.reflect.InaccessibleObjectException}.
+     */
+    public List<BeanProperty> getFields() {
+        List<BeanProperty> result = fields;
+        if (null == result) {
+            result = fieldProperties(beanClass);
+            fields = result;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,130 @@
+package net.stoerr.devtools.miscjavadevtools.codegenerator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+
+import org.apache.commons.lang3.exception.ContextedRuntimeException;
+
+/**
+ * A single property of a Java Bean as described by {@link BeanDescriptor}: a getter, a setter or a field, together with
+ * everything we derived from it by reflection. Instances are immutable and shared between threads. Values are read and
+ * written via {@link MethodHandle}s that are created once per property, so there are no access checks per call.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public final class BeanProperty {
+
+    private final String name;
+    private final String capitalizedName;
+    private final Method method;
+    private final Field field;
+    private final Type type;
+    private final Class<?> rawType;
+    private final boolean transientField;
+    /** (Object)Object for getters and fields, (Object,Object)void for setters. */
+    private final MethodHandle accessor;
+    /** The unconverted handle of the method, null for fields or if we have no access. */
+    private final MethodHandle exactHandle;
+
+    BeanProperty(final String name, final String capitalizedName, final Method method, final Field field,
+            final Type type, final Class<?> rawType, final MethodHandle accessor, final MethodHandle exactHandle) {
+        this.name = name;
+        this.capitalizedName = capitalizedName;
+        this.method = method;
+        this.field = field;
+        this.type = type;
+        this.rawType = rawType;
+        this.transientField = null != field && Modifier.isTransient(field.getModifiers());
+        this.accessor = accessor;
+        this.exactHandle = exactHandle;
+    }
+
+    /** The property name as used for the field, e.g. <code>astring</code>. */
+    public String getName() {
+        return name;
+    }
+
+    /** The property name as used in accessor names, e.g. <code>Astring</code> for <code>setAstring</code>. */
+    public String getCapitalizedName() {
+        return capitalizedName;
+    }
+
+    /** The getter or setter; null if this property describes a field. */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * The field: for field properties the field itself (already made accessible), for getters and setters the public
+     * field with the property name, if there is one.
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /** The generic type of the property: the getter return type, the setter parameter type or the field type. */
+    public Type getType() {
+        return type;
+    }
+
+    /** The raw class of {@link #getType()}. */
+    public Class<?> getRawType() {
+        return rawType;
+    }
+
+    /**
+     * The handle of the getter or setter with the exact type of the method, e.g. (Bean,int)void for a setter with an
+     * int parameter, for calls without boxing. Null for fields and if we have no access to the method.
+     */
+    public MethodHandle getExactHandle() {
+        return exactHandle;
+    }
+
+    /** True if the corresponding field is transient - it is probably calculated. */
+    public boolean isTransient() {
+        return transientField;
+    }
+
+    /** True if this is a setter, that is, {@link #set(Object, Object)} is supported, not {@link #get(Object)}. */
+    public boolean isSetter() {
+        return 2 == accessor.type().parameterCount();
+    }
+
+    /**
+     * Reads the value of this getter or field property from bean. Exceptions thrown by the getter are passed through;
+     * checked exceptions are wrapped into a {@link ContextedRuntimeException}.
+     */
+    public Object get(final Object bean) {
+        if (isSetter()) throw new IllegalStateException("Cannot read with setter " + method);
+        try {
+            return (Object) accessor.invokeExact(bean);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new ContextedRuntimeException(e).addContextValue("property", this);
+        }
+    }
+
+    /**
+     * Calls the setter of this property on bean. Exceptions thrown by the setter are passed through; checked exceptions
+     * are wrapped into a {@link ContextedRuntimeException}.
+     */
+    public void set(final Object bean, final Object value) {
+        if (!isSetter()) throw new IllegalStateException("Not a setter: " + this);
+        try {
+            accessor.invokeExact(bean, value);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new ContextedRuntimeException(e).addContextValue("property", this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BeanProperty[" + (null != method ? method : field) + "]";
+    }
+
+}
@@ -0,0 +1,106 @@
+package net.stoerr.devtools.miscjavadevtools.codegenerator;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Decides in which order the elements of sets and the entries of maps are written into the generated code, and which
+ * collection class recreates them, so that the generated code is the same in every run: hash ordered sources like
+ * {@link java.util.HashSet} are sorted by the generated literals of the elements, which works for any element type.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+enum CanonicalOrder {
+
+    /** A source sorted by the natural order of its elements: recreated with TreeSet / TreeMap. */
+    NATURAL("java.util.TreeSet", "java.util.TreeMap"),
+    /** Enum elements or keys, which are written in the order of their declaration: EnumSet / EnumMap. */
+    ENUM("java.util.EnumSet", "java.util.EnumMap"),
+    /** A source with a deterministic order we keep, e.g. a LinkedHashSet: recreated with LinkedHashSet / -Map. */
+    ITERATION("java.util.LinkedHashSet", "java.util.LinkedHashMap"),
+    /** A hash ordered source, written sorted by the literals of the elements: LinkedHashSet / LinkedHashMap. */
+    LITERAL("java.util.LinkedHashSet", "java.util.LinkedHashMap");
+
+    /** The class that recreates a set or map. */
+    final String setClass, mapClass;
+
+    private CanonicalOrder(final String setClass, final String mapClass) {
+        this.setClass = setClass;
+        this.mapClass = mapClass;
+    }
+
+    /** The order for a non-empty set whose elements have the declared type elementType. */
+    static CanonicalOrder of(final Iterable<?> set, final Type elementType) {
+        if (set instanceof SortedSet) return null == ((SortedSet<?>) set).comparator() ? NATURAL : ITERATION;
+        if (isEnum(elementType) && allEnums(set)) return ENUM;
+        return set instanceof LinkedHashSet ? ITERATION : LITERAL;
+    }
+
+    /** The order for a non-empty map whose keys have the declared type keyType. */
+    static CanonicalOrder of(final Map<?, ?> map, final Type keyType) {
+        if (map instanceof SortedMap) return null == ((SortedMap<?, ?>) map).comparator() ? NATURAL : ITERATION;
+        if (isEnum(keyType) && allEnums(map.keySet())) return ENUM;
+        return map instanceof LinkedHashMap ? ITERATION : LITERAL;
+    }
+
+    private static boolean isEnum(final Type type) {
+        return type instanceof Class && ((Class<?>) type).isEnum();
+    }
+
+    private static boolean allEnums(final Iterable<?> elements) {
+        for (final Object element : elements)
+            if (!(element instanceof Enum)) return false;
+        return true;
+    }
+
+    /**
+     * The elements in the order in which they are written. For {@link #LITERAL} the literals are computed only once per
+     * element and the elements are sorted by them; the caller can reuse them from {@link Keyed#literal}.
+     * @param literal computes the generated literal of an element - or for map entries of their key
+     */
+    <T> List<Keyed<T>> sort(final Iterable<? extends T> elements, final Function<? super T, String> literal) {
+        final List<Keyed<T>> result = new ArrayList<>();
+        if (ENUM == this) {
+            // enums compare by declaration order
+            final Map<Object, T> byEnum = new TreeMap<>();
+            for (final T element : elements)
+                byEnum.put(element instanceof Map.Entry ? ((Map.Entry<?, ?>) element).getKey() : element, element);
+            for (final T element : byEnum.values())
+                result.add(new Keyed<>(null, element));
+        } else if (LITERAL == this) {
+            for (final T element : elements)
+                result.add(new Keyed<>(literal.apply(element), element));
+            Collections.sort(result);
+        } else {
+            for (final T element : elements)
+                result.add(new Keyed<>(null, element));
+        }
+        return result;
+    }
+
+    /** An element with its literal, if that was needed as sort key. */
+    static final class Keyed<T> implements Comparable<Keyed<T>> {
+        /** The literal of the element or the key of the map entry; null if it was not needed for sorting. */
+        final String literal;
+        final T element;
+
+        Keyed(final String literal, final T element) {
+            this.literal = literal;
+            this.element = element;
+        }
+
+        @Override
+        public int compareTo(final Keyed<T> o) {
+            return literal.compareTo(o.literal);
+        }
+    }
+
+}
@@ -0,0 +1,329 @@
+package net.stoerr.devtools.miscjavadevtools.codegenerator;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import net.stoerr.devtools.miscjavadevtools.codegenerator.CanonicalOrder.Keyed;
+
+import org.apache.commons.lang3.exception.ContextedRuntimeException;
+
+/**
+ * Generates Java-Code for values like {@link ValueCodeGenerator}, but large collections are created by generated static
+ * helper methods that fill them in chunks of a limited number of elements, so that the generated code stays below the
+ * 64KB bytecode limit per method even for fixtures of production data size. Maps with more than one entry are created
+ * by helper methods, too, instead of a double brace initializer that is an anonymous class per map. Sets and maps are
+ * written in the same deterministic order as by {@link ValueCodeGenerator}. Large primitive arrays are packed into
+ * Base64 strings, which is much more compact than array initializers. The helper methods ({@link #getHelperMethods()})
+ * have to be put into the class containing the expressions. Use e.g.<br/>
+ * <code>ChunkedValueCodeGenerator generator = new ChunkedValueCodeGenerator();<br/>
+ * String expression = generator.makeExpression(value, type);<br/>
+ * String methods = generator.getHelperMethods();</code><br/>
+ * Limit: all helper methods share the constant pool of their class, which has at most 65535 entries. So fixtures with
+ * more than about 30000 distinct String, long or double literals do not compile. For those, split the values between
+ * several generators with different {@link #withHelperClass(String)}, and put the helper methods of each into its own
+ * nested static class.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class ChunkedValueCodeGenerator {
+
+    private int chunkSize = 500;
+
+    private String methodPrefix = "values";
+
+    /** The class containing the helper methods if that's not the class containing the expressions. */
+    private String helperClass;
+
+    private final StringBuilder helperMethods = new StringBuilder();
+
+    private int helperCount;
+
+    /**
+     * Sets the maximum number of elements added by one helper method; lists and sets up to that size are created
+     * inline. Default 500.
+     */
+    public ChunkedValueCodeGenerator withChunkSize(final int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Need positive chunk size but got " + chunkSize);
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /** Sets the prefix of the names of the generated helper methods - default "values", giving values1() etc. */
+    public ChunkedValueCodeGenerator withMethodPrefix(final String methodPrefix) {
+        this.methodPrefix = methodPrefix;
+        return this;
+    }
+
+    /**
+     * Sets the name of the (e.g. nested) class the helper methods are put into, if that's not the class containing the
+     * expressions; the helper methods are then called as e.g. Values.values1(). Default: the same class.
+     */
+    public ChunkedValueCodeGenerator withHelperClass(final String helperClass) {
+        this.helperClass = helperClass;
+        return this;
+    }
+
+    /**
+     * Generates Java-Code that recreates value, possibly calling helper methods.
+     * @param type required type - important e.g. for simple types or parameterized stuff
+     * @return a valid Java-Expression
+     * @throws IllegalArgumentException if the value type is not supported
+     */
+    public String makeExpression(final Object value, final Type type) throws IllegalArgumentException {
+        final StringBuilder buf = new StringBuilder();
+        try {
+            appendExpression(buf, value, type);
+        } catch (final IOException e) {
+            throw new ContextedRuntimeException("Bug: impossible for StringBuilder", e);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Appends Java-Code that recreates value to out, possibly calling helper methods.
+     * @throws IllegalArgumentException if the value type is not supported
+     */
+    public void appendExpression(final Appendable out, final Object value, final Type type) throws IOException,
+            IllegalArgumentException {
+        if (type instanceof ParameterizedType && (value instanceof Collection || value instanceof Map)) {
+            final Type[] typeArguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (value instanceof Collection && !((Collection<?>) value).isEmpty()) {
+                appendCollection(out, (Collection<?>) value, typeArguments[0]);
+                return;
+            }
+            if (value instanceof Map && !((Map<?, ?>) value).isEmpty()) {
+                appendMap(out, (Map<?, ?>) value, typeArguments[0], typeArguments[1]);
+                return;
+            }
+        }
+        if (null != value && value.getClass().isArray() && ValueCodeGenerator.isSupported(value, null)) {
+            appendArray(out, value);
+            return;
+        }
+        ValueCodeGenerator.appendExpression(out, value, type, true);
+    }
+
+    private void appendArray(final Appendable out, final Object array) throws IOException {
+        final Class<?> componentType = array.getClass().getComponentType();
+        final int length = Array.getLength(array);
+        if (length > chunkSize && componentType.isPrimitive() && boolean.class != componentType) {
+            out.append(packedArrayHelper(array, componentType, length));
+        } else if (length > chunkSize) {
+            final Iterable<Integer> indexes = () -> IntStream.range(0, length).iterator();
+            out.append(helper(ValueCodeGenerator.typename(array.getClass()),
+                    ValueCodeGenerator.newArray(componentType, length), indexes, (chunk, index) -> {
+                        chunk.append("values[").append(index.toString()).append("] = ");
+                        appendExpression(chunk, Array.get(array, (Integer) index), componentType);
+                    }));
+        } else if (!componentType.isPrimitive() && 0 < length) {
+            // small array, but the elements might need helpers
+            out.append("new ").append(ValueCodeGenerator.typename(componentType)).append("[] { ");
+            for (int i = 0; i < length; ++i) {
+                if (0 < i) out.append(", ");
+                appendExpression(out, Array.get(array, i), componentType);
+            }
+            out.append(" }");
+        } else {
+            ValueCodeGenerator.appendExpression(out, array, null, true);
+        }
+    }
+
+    /**
+     * Generates a helper method creating a large primitive array from its big endian bytes, written as Base64 strings
+     * of at most {@link ValueCodeGenerator#BASE64_CHUNK_BYTES} bytes. That's much more compact than an array
+     * initializer, which needs several bytes of bytecode per element.
+     * @return the call of the helper method
+     */
+    private String packedArrayHelper(final Object array, final Class<?> componentType, final int length) {
+        final ByteBuffer bytes;
+        String view = null;
+        if (array instanceof byte[]) {
+            bytes = ByteBuffer.wrap((byte[]) array);
+        } else if (array instanceof short[]) {
+            bytes = ByteBuffer.allocate(2 * length);
+            bytes.asShortBuffer().put((short[]) array);
+            view = "asShortBuffer()";
+        } else if (array instanceof char[]) {
+            bytes = ByteBuffer.allocate(2 * length);
+            bytes.asCharBuffer().put((char[]) array);
+            view = "asCharBuffer()";
+        } else if (array instanceof int[]) {
+            bytes = ByteBuffer.allocate(4 * length);
+            bytes.asIntBuffer().put((int[]) array);
+            view = "asIntBuffer()";
+        } else if (array instanceof float[]) {
+            bytes = ByteBuffer.allocate(4 * length);
+            bytes.asFloatBuffer().put((float[]) array);
+            view = "asFloatBuffer()";
+        } else if (array instanceof long[]) {
+            bytes = ByteBuffer.allocate(8 * length);
+            bytes.asLongBuffer().put((long[]) array);
+            view = "asLongBuffer()";
+        } else if (array instanceof double[]) {
+            bytes = ByteBuffer.allocate(8 * length);
+            bytes.asDoubleBuffer().put((double[]) array);
+            view = "asDoubleBuffer()";
+        } else {
+            throw new IllegalArgumentException("Bug: not a packable array: " + array.getClass());
+        }
+        final byte[] content = bytes.array();
+        final String arrayTypename = componentType.getName() + "[]";
+        final String name = methodPrefix + (++helperCount);
+        final StringBuilder method = new StringBuilder();
+        method.append("    private static ").append(arrayTypename).append(" ").append(name).append("() {\n");
+        method.append("        final java.nio.ByteBuffer bytes = java.nio.ByteBuffer.allocate(")
+                .append(Integer.toString(content.length)).append(");\n");
+        for (int start = 0; start < content.length; start += ValueCodeGenerator.BASE64_CHUNK_BYTES) {
+            final int end = Math.min(content.length, start + ValueCodeGenerator.BASE64_CHUNK_BYTES);
+            final byte[] part = Arrays.copyOfRange(content, start, end);
+            method.append("        bytes.put(java.util.Base64.getDecoder().decode(\"")
+                    .append(Base64.getEncoder().encodeToString(part)).append("\"));\n");
+        }
+        method.append("        bytes.flip();\n");
+        method.append("        final ").append(arrayTypename).append(" values = new ").append(componentType.getName())
+                .append("[").append(Integer.toString(length)).append("];\n");
+        method.append("        bytes").append(null == view ? "" : "." + view).append(".get(values);\n");
+        method.append("        return values;\n    }\n");
+        helperMethods.append("\n").append(method);
+        return call(name);
+    }
+
+    private void appendCollection(final Appendable out, final Collection<?> collection, final Type elementType)
+            throws IOException {
+        final String elementTypename = ValueCodeGenerator.typename(elementType);
+        final CanonicalOrder order = collection instanceof Set ? CanonicalOrder.of(collection, elementType) : null;
+        final Iterable<?> elements = null == order ? collection : elements(order.sort(collection,
+                element -> ValueCodeGenerator.makeExpression(element, elementType, true)));
+        if (collection.size() > chunkSize) {
+            final String creation;
+            if (null == order) creation = "new java.util.ArrayList<" + elementTypename + ">(" + collection.size() + ")";
+            else if (CanonicalOrder.ENUM == order) creation = "java.util.EnumSet.noneOf(" + elementTypename + ".class)";
+            else creation = "new " + order.setClass + "<" + elementTypename + ">()";
+            out.append(helper((null != order ? "java.util.Set<" : "java.util.List<") + elementTypename + ">",
+                    creation, elements, (chunk, element) -> {
+                        chunk.append("values.add(");
+                        appendExpression(chunk, element, elementType);
+                        chunk.append(")");
+                    }));
+            return;
+        }
+        // small collection, but the elements might need helpers
+        if (CanonicalOrder.ENUM == order) out.append("java.util.EnumSet.of(");
+        else if (null != order) out.append("new ").append(order.setClass).append('<').append(elementTypename)
+                .append(">(java.util.Arrays.asList(");
+        else out.append("java.util.Arrays.asList(");
+        boolean first = true;
+        for (final Object element : elements) {
+            if (!first) out.append(", ");
+            first = false;
+            appendExpression(out, element, elementType);
+        }
+        out.append(null == order || CanonicalOrder.ENUM == order ? ")" : "))");
+    }
+
+    private void appendMap(final Appendable out, final Map<?, ?> map, final Type keyType, final Type valueType)
+            throws IOException {
+        final String keyTypename = ValueCodeGenerator.typename(keyType);
+        final String signature = "<" + keyTypename + ", " + ValueCodeGenerator.typename(valueType) + ">";
+        if (1 == map.size()) {
+            final Entry<?, ?> entry = map.entrySet().iterator().next();
+            out.append("java.util.Collections.").append(signature).append(" singletonMap(");
+            appendExpression(out, entry.getKey(), keyType);
+            out.append(", ");
+            appendExpression(out, entry.getValue(), valueType);
+            out.append(")");
+            return;
+        }
+        final CanonicalOrder order = CanonicalOrder.of(map, keyType);
+        final String creation = "new " + order.mapClass + signature + "("
+                + (CanonicalOrder.ENUM == order ? keyTypename + ".class" : "") + ")";
+        out.append(helper("java.util.Map" + signature, creation, elements(order.<Entry<?, ?>> sort(map.entrySet(),
+                entry -> ValueCodeGenerator.makeExpression(entry.getKey(), keyType, true))), (chunk, element) -> {
+                    final Entry<?, ?> entry = (Entry<?, ?>) element;
+                    chunk.append("values.put(");
+                    appendExpression(chunk, entry.getKey(), keyType);
+                    chunk.append(", ");
+                    appendExpression(chunk, entry.getValue(), valueType);
+                    chunk.append(")");
+                }));
+    }
+
+    /** The elements in canonical order; the literals computed for sorting aren't used since we might need helpers. */
+    private static <T> List<T> elements(final List<Keyed<T>> sorted) {
+        final List<T> elements = new ArrayList<>(sorted.size());
+        for (final Keyed<T> element : sorted)
+            elements.add(element.element);
+        return elements;
+    }
+
+    /** The call of the helper method name. */
+    private String call(final String name) {
+        return null == helperClass ? name + "()" : helperClass + "." + name + "()";
+    }
+
+    /** The generated helper methods for all expressions generated so far. */
+    public String getHelperMethods() {
+        return helperMethods.toString();
+    }
+
+    /** Writes the generated helper methods for all expressions generated so far to out. */
+    public void writeHelperMethods(final Appendable out) throws IOException {
+        out.append(helperMethods);
+    }
+
+    /** Writes the statement adding one element to the collection or array "values" within a helper method. */
+    private interface ElementWriter {
+        void write(Appendable chunk, Object element) throws IOException;
+    }
+
+    /**
+     * Generates a helper method creating the collection, which calls a chunk method per {@link #chunkSize} elements
+     * to add them.
+     * @param valuesType the declared type of the collection
+     * @param creation the expression creating the empty collection
+     * @return the call of the helper method
+     */
+    private String helper(final String valuesType, final String creation, final Iterable<?> elements,
+            final ElementWriter elementWriter) throws IOException {
+        final String name = methodPrefix + (++helperCount);
+        final StringBuilder method = new StringBuilder();
+        method.append("    private static ").append(valuesType).append(" ").append(name).append("() {\n");
+        method.append("        final ").append(valuesType).append(" values = ").append(creation).append(";\n");
+        int chunkNumber = 0;
+        StringBuilder chunk = null;
+        int chunkElements = 0;
+        for (final Object element : elements) {
+            if (null == chunk) {
+                final String chunkName = name + "Chunk" + chunkNumber++;
+                method.append("        ").append(chunkName).append("(values);\n");
+                chunk = new StringBuilder();
+                chunk.append("    private static void ").append(chunkName).append("(final ").append(valuesType)
+                        .append(" values) {\n");
+            }
+            chunk.append("        ");
+            elementWriter.write(chunk, element);
+            chunk.append(";\n");
+            if (++chunkElements == chunkSize) {
+                helperMethods.append("\n").append(chunk).append("    }\n");
+                chunk = null;
+                chunkElements = 0;
+            }
+        }
+        if (null != chunk) helperMethods.append("\n").append(chunk).append("    }\n");
+        method.append("        return values;\n    }\n");
+        helperMethods.append("\n").append(method);
+        return call(name);
+    }
+
+}
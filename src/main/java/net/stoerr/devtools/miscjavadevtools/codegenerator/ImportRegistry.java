@@ -0,0 +1,96 @@
+package net.stoerr.devtools.miscjavadevtools.codegenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the imports needed by generated code and decides how a class is referenced: by its simple name if it is
+ * imported or in java.lang, or by its canonical name if the simple name is already used by another class.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class ImportRegistry {
+
+    /** The canonical names of the imported classes, in the order they were first referenced. */
+    private final Set<String> imports = new LinkedHashSet<>();
+    /** Maps the simple names we handed out to the canonical name of the class they stand for. */
+    private final Map<String, String> simpleNames = new HashMap<>();
+
+    /**
+     * Registers a reference to clazz, adding an import if necessary.
+     * @return the name to use for clazz in the code
+     */
+    public String reference(final Class<?> clazz) {
+        if (clazz.isArray()) return reference(clazz.getComponentType()) + "[]";
+        final String canonicalName = clazz.getCanonicalName();
+        if (clazz.isPrimitive() || null == canonicalName) return clazz.getName();
+        final String simpleName = clazz.getSimpleName();
+        final String previous = simpleNames.get(simpleName);
+        if (null == previous) {
+            simpleNames.put(simpleName, canonicalName);
+            final Package pkg = clazz.getPackage();
+            if (null != pkg && !pkg.getName().isEmpty() && !"java.lang".equals(pkg.getName())) {
+                imports.add(canonicalName);
+            }
+            return simpleName;
+        }
+        return previous.equals(canonicalName) ? simpleName : canonicalName;
+    }
+
+    /** The import statements in the order the classes were first referenced. */
+    public String getImports() {
+        final StringBuilder buf = new StringBuilder();
+        for (final String name : imports)
+            buf.append("import ").append(name).append(";\n");
+        return buf.toString();
+    }
+
+    /**
+     * The import statements sorted alphabetically and grouped by their top level package - java first, then javax, then
+     * the others. The groups are separated by an empty line.
+     */
+    public String getSortedImports() {
+        final List<String> sorted = new ArrayList<>(imports);
+        Collections.sort(sorted, IMPORT_ORDER);
+        final StringBuilder buf = new StringBuilder();
+        String lastGroup = null;
+        for (final String name : sorted) {
+            final String group = topLevelPackage(name);
+            if (null != lastGroup && !lastGroup.equals(group)) buf.append("\n");
+            lastGroup = group;
+            buf.append("import ").append(name).append(";\n");
+        }
+        return buf.toString();
+    }
+
+    private static final Comparator<String> IMPORT_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(final String o1, final String o2) {
+            final int rankDifference = groupRank(o1) - groupRank(o2);
+            return 0 != rankDifference ? rankDifference : o1.compareTo(o2);
+        }
+
+        private int groupRank(final String name) {
+            final String group = topLevelPackage(name);
+            if ("java".equals(group)) return 0;
+            if ("javax".equals(group)) return 1;
+            return 2;
+        }
+    };
+
+    private static String topLevelPackage(final String name) {
+        return name.substring(0, Math.max(0, name.indexOf('.')));
+    }
+
+    /** Writes the import statements to out - sorted or in the order they were first referenced. */
+    public void writeImports(final Appendable out, final boolean sorted) throws IOException {
+        out.append(sorted ? getSortedImports() : getImports());
+    }
+
+}
@@ -1,16 +1,41 @@
 package net.stoerr.devtools.miscjavadevtools.codegenerator;
 
+import java.io.IOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.stoerr.devtools.miscjavadevtools.codegenerator.CanonicalOrder.Keyed;
+
+import org.apache.commons.lang3.exception.ContextedRuntimeException;
 
 /**
- * Generates Java-Code for a simple value or a collection of simple values.
+ * Generates Java-Code for a simple value or a collection of simple values. The code for a value has to fit into one
+ * method, so for large arrays other than byte[] and large collections please use {@link ChunkedValueCodeGenerator}.
  * @author Hans-Peter Störr www.stoerr.net
  */
 public class ValueCodeGenerator {
@@ -36,99 +61,525 @@ public class ValueCodeGenerator {
      * @return a valid Java-Expression
      * @throws IllegalArgumentException if the value type is not supported
      */
-    public static String makeExpression(final Object value, Type type, final boolean autoboxingEnabled)
+    public static String makeExpression(final Object value, final Type type, final boolean autoboxingEnabled)
             throws IllegalArgumentException {
-        if (null == value) return "null";
+        final StringBuilder buf = new StringBuilder();
+        try {
+            appendExpression(buf, value, type, autoboxingEnabled);
+        } catch (final IOException e) {
+            throw new ContextedRuntimeException("Bug: impossible for StringBuilder", e);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Appends Java-Code that recreates value to out, as {@link #makeExpression(Object, Type, boolean)}, but without
+     * creating intermediate strings. Note: if the value or one of its elements is not supported, the part of the
+     * expression before that is already appended.
+     * @throws IllegalArgumentException if the value type is not supported
+     */
+    public static void appendExpression(final Appendable out, final Object value, Type type,
+            final boolean autoboxingEnabled) throws IOException, IllegalArgumentException {
+        if (null == value) {
+            out.append("null");
+            return;
+        }
+        if (null == type) type = value.getClass();
+        if (type instanceof ParameterizedType) {
+            appendParameterizedType(out, value, (ParameterizedType) type);
+            return;
+        }
+        final ValueRenderer renderer = renderer(value, type);
+        if (null == renderer) {
+            throw new IllegalArgumentException("Type not yet supported; register a ValueRenderer for "
+                    + value.getClass() + " with type " + type);
+        }
+        renderer.render(out, value, autoboxingEnabled);
+    }
+
+    /**
+     * Checks whether {@link #makeExpression(Object, Type, boolean)} supports value with the type - without exceptions,
+     * so this is cheap. For collections only the declared element types are checked.
+     * @param type required type, or null for the type of value
+     */
+    public static boolean isSupported(final Object value, Type type) {
+        if (null == value) return true;
         if (null == type) type = value.getClass();
+        if (type instanceof ParameterizedType) {
+            final Type[] typeArguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (value instanceof List || value instanceof Set) return isSupportedType(typeArguments[0]);
+            if (value instanceof Map) return isSupportedType(typeArguments[0]) && isSupportedType(typeArguments[1]);
+            return false;
+        }
+        return null != renderer(value, type);
+    }
+
+    private static boolean isSupportedType(final Type type) {
+        if (type instanceof ParameterizedType) {
+            final Type rawType = ((ParameterizedType) type).getRawType();
+            if (List.class != rawType && Set.class != rawType && Map.class != rawType) return false;
+            for (final Type typeArgument : ((ParameterizedType) type).getActualTypeArguments())
+                if (!isSupportedType(typeArgument)) return false;
+            return true;
+        }
+        return type instanceof Class && UNSUPPORTED != renderer((Class<?>) type);
+    }
+
+    /** The renderer for value with type, null if not supported. */
+    private static ValueRenderer renderer(final Object value, final Type type) {
+        if (type instanceof Class) {
+            final ValueRenderer renderer = renderer((Class<?>) type);
+            if (UNSUPPORTED != renderer) return renderer;
+        }
+        return value instanceof Enum ? ENUM_RENDERER : null;
+    }
+
+    /**
+     * The renderer for type, {@link #UNSUPPORTED} if there is none. Whether the component type of an array is supported
+     * is checked here and not cached with the array type, so that it follows renderers registered later.
+     */
+    private static ValueRenderer renderer(final Class<?> type) {
+        final ValueRenderer renderer = RENDERERS.get(type);
+        if (ARRAY_RENDERER == renderer && UNSUPPORTED == renderer(type.getComponentType())) return UNSUPPORTED;
+        return renderer;
+    }
+
+    /**
+     * Registers a renderer for values of exactly the given type (e.g. a primitive type or a wrapper type), replacing
+     * the builtin one if there is one. Please register before generating code with that type.
+     */
+    public static void registerRenderer(final Class<?> type, final ValueRenderer renderer) {
+        REGISTERED_RENDERERS.put(type, renderer);
+        RENDERERS.remove(type);
+    }
+
+    /** Marker for types without renderer, since {@link #RENDERERS} cannot contain null. */
+    private static final ValueRenderer UNSUPPORTED = new ValueRenderer() {
+        @Override
+        public void render(final Appendable out, final Object value, final boolean autoboxingEnabled) {
+            throw new IllegalArgumentException("Type not yet supported: " + value.getClass());
+        }
+    };
+
+    private static final ValueRenderer ENUM_RENDERER = (out, value, autoboxingEnabled) -> {
+        final Enum<?> enValue = (Enum<?>) value;
+        out.append(enValue.getDeclaringClass().getCanonicalName()).append('.').append(enValue.name());
+    };
+
+    /** Generic renderer for arrays whose component type is supported. */
+    private static final ValueRenderer ARRAY_RENDERER = (out, value, autoboxingEnabled) -> {
+        final Class<?> componentType = value.getClass().getComponentType();
+        final int length = Array.getLength(value);
+        if (0 == length) {
+            out.append(newArray(componentType, 0));
+            return;
+        }
+        out.append("new ").append(typename(componentType)).append("[] { ");
+        for (int i = 0; i < length; ++i) {
+            if (0 < i) out.append(", ");
+            appendExpression(out, Array.get(value, i), componentType, true);
+        }
+        out.append(" }");
+    };
+
+    private static final Map<Class<?>, ValueRenderer> REGISTERED_RENDERERS = new ConcurrentHashMap<>();
+
+    /**
+     * The renderers by type - the registered ones and those derived for enums and arrays. Arrays always get the
+     * {@link #ARRAY_RENDERER} here; {@link #renderer(Class)} checks their component type.
+     */
+    private static final ClassValue<ValueRenderer> RENDERERS = new ClassValue<ValueRenderer>() {
+        @Override
+        protected ValueRenderer computeValue(final Class<?> type) {
+            final ValueRenderer registered = REGISTERED_RENDERERS.get(type);
+            if (null != registered) return registered;
+            if (Enum.class.isAssignableFrom(type)) return ENUM_RENDERER;
+            if (type.isArray()) return ARRAY_RENDERER;
+            return UNSUPPORTED;
+        }
+    };
+
+    /** A renderer for a wrapper type that uses e.g. Integer.valueOf(...) around primitive if autoboxing is disabled. */
+    private static ValueRenderer boxed(final String wrapper, final ValueRenderer primitive) {
+        return (out, value, autoboxingEnabled) -> {
+            if (autoboxingEnabled) {
+                primitive.render(out, value, true);
+            } else {
+                out.append(wrapper).append(".valueOf(");
+                primitive.render(out, value, true);
+                out.append(")");
+            }
+        };
+    }
+
+    /** A renderer creating the value by parsing its toString(), e.g. for most of the java.time classes. */
+    private static ValueRenderer parsed(final Class<?> type) {
+        return (out, value, autoboxingEnabled) -> {
+            out.append(type.getName()).append(".parse(");
+            appendStringLiteral(out, value.toString());
+            out.append(")");
+        };
+    }
+
+    private static void registerBoxed(final Class<?> primitiveType, final Class<?> wrapperType,
+            final ValueRenderer primitive) {
+        registerRenderer(primitiveType, primitive);
+        registerRenderer(wrapperType, boxed(wrapperType.getSimpleName(), primitive));
+    }
+
+    static {
+        registerBoxed(Integer.TYPE, Integer.class, (out, value, autoboxingEnabled) -> out.append(value.toString()));
+        registerBoxed(Long.TYPE, Long.class, (out, value, autoboxingEnabled) -> out.append(value.toString())
+                .append('L'));
+        registerBoxed(Short.TYPE, Short.class, (out, value, autoboxingEnabled) -> out.append("(short) ").append(
+                value.toString()));
+        registerBoxed(Byte.TYPE, Byte.class, (out, value, autoboxingEnabled) -> out.append("(byte) ").append(
+                value.toString()));
+        registerBoxed(Character.TYPE, Character.class,
+                (out, value, autoboxingEnabled) -> appendCharLiteral(out, (Character) value));
+        registerBoxed(Double.TYPE, Double.class, (out, value, autoboxingEnabled) -> appendDouble(out, (Double) value));
+        registerBoxed(Float.TYPE, Float.class, (out, value, autoboxingEnabled) -> appendFloat(out, (Float) value));
+        final ValueRenderer booleanRenderer = (out, value, autoboxingEnabled) -> out.append(value.toString());
+        registerRenderer(Boolean.TYPE, booleanRenderer);
+        registerRenderer(Boolean.class, (out, value, autoboxingEnabled) -> {
+            if (autoboxingEnabled) booleanRenderer.render(out, value, true);
+            else out.append("Boolean.").append(String.valueOf(value).toUpperCase());
+        });
+        registerRenderer(String.class, (out, value, autoboxingEnabled) -> appendStringLiteral(out, (String) value));
+
+        registerRenderer(java.util.Date.class, (out, value, autoboxingEnabled) -> out.append("new java.util.Date(")
+                .append(Long.toString(((Date) value).getTime())).append("L)"));
+        registerRenderer(java.sql.Date.class, (out, value, autoboxingEnabled) -> out.append("new java.sql.Date(")
+                .append(Long.toString(((Date) value).getTime())).append("L)"));
+        registerRenderer(BigDecimal.class, (out, value, autoboxingEnabled) -> {
+            out.append("new java.math.BigDecimal(");
+            appendStringLiteral(out, value.toString());
+            out.append(")");
+        });
+        registerRenderer(BigInteger.class, (out, value, autoboxingEnabled) -> {
+            out.append("new java.math.BigInteger(");
+            appendStringLiteral(out, value.toString());
+            out.append(")");
+        });
+        for (final Class<?> timeClass : Arrays.<Class<?>> asList(Instant.class, LocalDate.class, LocalTime.class,
+                LocalDateTime.class, OffsetTime.class, OffsetDateTime.class, ZonedDateTime.class, Duration.class,
+                Period.class, Year.class, YearMonth.class, MonthDay.class)) {
+            registerRenderer(timeClass, parsed(timeClass));
+        }
+        registerPrimitiveArrayRenderers();
+    }
+
+    private static void appendDouble(final Appendable out, final double d) throws IOException {
+        if (Double.isNaN(d)) out.append("Double.NaN");
+        else if (Double.isInfinite(d)) out.append(d > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY");
+        else out.append(Double.toString(d));
+    }
 
-        // primitive types and derivates
-        if (type.equals(Integer.TYPE) || type.equals(Integer.class) && autoboxingEnabled) return "" + value;
-        if (type.equals(Integer.class)) return "Integer.valueOf(" + value + ")";
-        if (type.equals(Long.TYPE) || type.equals(Long.class) && autoboxingEnabled) return value + "L";
-        if (type.equals(Long.class)) return "Long.valueOf(" + value + "L)";
-        if (type.equals(String.class)) return "\"" + value + "\""; // needs quoting; add when needed
-        if (type.equals(Character.TYPE) || type.equals(Character.class) && autoboxingEnabled) return "'" + value + "'"; // needs
-                                                                                                                        // quoting;
-                                                                                                                        // add
-                                                                                                                        // when
-        // needed
-        if (type.equals(Character.class)) return "Character.valueOf('" + value + "')";
-        if (type.equals(Boolean.TYPE) || type.equals(Boolean.class) && autoboxingEnabled) return value.toString();
-        if (type.equals(Boolean.class)) return "Boolean." + String.valueOf(value).toUpperCase();
-
-        // complex stuff
-        if (type.equals(java.util.Date.class))
-            return "new java.util.Date(" + makeExpression(((Date) value).getTime()) + ")";
-        if (type.equals(java.sql.Date.class))
-            return "new java.sql.Date(" + makeExpression(((Date) value).getTime()) + ")";
-
-        if (type instanceof ParameterizedType) return makeParameterizedType(value, (ParameterizedType) type);
-
-        if (value instanceof Enum) {
-            final Enum<?> enValue = (Enum<?>) value;
-            return enValue.getDeclaringClass().getName() + "." + enValue.name();
-        }
-        throw new IllegalArgumentException("Type not yet supported; extend makeExpression for " + value.getClass()
-                + " with type " + type);
-    }
-
-    /** Handles Lists, Sets, Maps */
-    private static String makeParameterizedType(final Object value, final ParameterizedType type) {
+    private static void appendFloat(final Appendable out, final float f) throws IOException {
+        if (Float.isNaN(f)) out.append("Float.NaN");
+        else if (Float.isInfinite(f)) out.append(f > 0 ? "Float.POSITIVE_INFINITY" : "Float.NEGATIVE_INFINITY");
+        else out.append(Float.toString(f)).append('f');
+    }
+
+    /** byte[] longer than this are written as Base64 string. */
+    private static final int BASE64_MIN_LENGTH = 16;
+
+    /**
+     * The maximum number of bytes per Base64 string literal: a multiple of 3, so that the pieces can be concatenated,
+     * and the 64000 characters stay below the limit of 65535 bytes for a string constant in the class file.
+     */
+    static final int BASE64_CHUNK_BYTES = 48000;
+
+    /**
+     * Appends "new type[] { " - or the complete expression "new type[0]" if length is 0.
+     * @return false if the array is empty and thus already complete
+     */
+    private static boolean startArray(final Appendable out, final String componentType, final int length)
+            throws IOException {
+        out.append("new ").append(componentType);
+        if (0 == length) {
+            out.append("[0]");
+            return false;
+        }
+        out.append("[] { ");
+        return true;
+    }
+
+    /**
+     * The renderers for primitive arrays iterate over the arrays without boxing the elements. Arrays of arrays are
+     * handled by the generic array renderer, which delegates to these.
+     */
+    private static void registerPrimitiveArrayRenderers() {
+        registerRenderer(int[].class, (out, value, autoboxingEnabled) -> {
+            final int[] array = (int[]) value;
+            if (!startArray(out, "int", array.length)) return;
+            for (int i = 0; i < array.length; ++i) {
+                if (0 < i) out.append(", ");
+                out.append(Integer.toString(array[i]));
+            }
+            out.append(" }");
+        });
+        registerRenderer(long[].class, (out, value, autoboxingEnabled) -> {
+            final long[] array = (long[]) value;
+            if (!startArray(out, "long", array.length)) return;
+            for (int i = 0; i < array.length; ++i) {
+                if (0 < i) out.append(", ");
+                out.append(Long.toString(array[i])).append('L');
+            }
+            out.append(" }");
+        });
+        registerRenderer(short[].class, (out, value, autoboxingEnabled) -> {
+            final short[] array = (short[]) value;
+            if (!startArray(out, "short", array.length)) return;
+            for (int i = 0; i < array.length; ++i) {
+                if (0 < i) out.append(", ");
+                out.append(Short.toString(array[i]));
+            }
+            out.append(" }");
+        });
+        registerRenderer(double[].class, (out, value, autoboxingEnabled) -> {
+            final double[] array = (double[]) value;
+            if (!startArray(out, "double", array.length)) return;
+            for (int i = 0; i < array.length; ++i) {
+                if (0 < i) out.append(", ");
+                appendDouble(out, array[i]);
+            }
+            out.append(" }");
+        });
+        registerRenderer(float[].class, (out, value, autoboxingEnabled) -> {
+            final float[] array = (float[]) value;
+            if (!startArray(out, "float", array.length)) return;
+            for (int i = 0; i < array.length; ++i) {
+                if (0 < i) out.append(", ");
+                appendFloat(out, array[i]);
+            }
+            out.append(" }");
+        });
+        registerRenderer(boolean[].class, (out, value, autoboxingEnabled) -> {
+            final boolean[] array = (boolean[]) value;
+            if (!startArray(out, "boolean", array.length)) return;
+            for (int i = 0; i < array.length; ++i) {
+                if (0 < i) out.append(", ");
+                out.append(array[i] ? "true" : "false");
+            }
+            out.append(" }");
+        });
+        registerRenderer(byte[].class, (out, value, autoboxingEnabled) -> {
+            final byte[] array = (byte[]) value;
+            if (array.length > BASE64_MIN_LENGTH) {
+                appendBase64(out, array);
+                return;
+            }
+            if (!startArray(out, "byte", array.length)) return;
+            for (int i = 0; i < array.length; ++i) {
+                if (0 < i) out.append(", ");
+                out.append(Byte.toString(array[i]));
+            }
+            out.append(" }");
+        });
+        registerRenderer(char[].class, (out, value, autoboxingEnabled) -> {
+            final char[] array = (char[]) value;
+            if (0 == array.length) {
+                out.append("new char[0]");
+            } else {
+                appendStringLiteral(out, CharBuffer.wrap(array));
+                out.append(".toCharArray()");
+            }
+        });
+    }
+
+    /**
+     * Appends an expression decoding the Base64 of array. Larger arrays are split into several string literals of
+     * {@link #BASE64_CHUNK_BYTES}, joined at runtime - with + javac would join them into one too large constant.
+     */
+    private static void appendBase64(final Appendable out, final byte[] array) throws IOException {
+        out.append("java.util.Base64.getDecoder().decode(");
+        if (array.length > BASE64_CHUNK_BYTES) out.append("String.join(\"\", ");
+        for (int start = 0; start < array.length; start += BASE64_CHUNK_BYTES) {
+            if (0 < start) out.append(", ");
+            final byte[] part = Arrays.copyOfRange(array, start, Math.min(array.length, start + BASE64_CHUNK_BYTES));
+            out.append('"').append(Base64.getEncoder().encodeToString(part)).append('"');
+        }
+        if (array.length > BASE64_CHUNK_BYTES) out.append(")");
+        out.append(")");
+    }
+
+    /**
+     * The escape sequences for the ASCII characters within string literals, null if the character can be written as
+     * is. All other characters are written as unicode escapes, so that the code does not depend on the encoding.
+     */
+    private static final String[] STRING_ESCAPES = new String[128];
+    /** The escape sequences for the ASCII characters within character literals. */
+    private static final String[] CHAR_ESCAPES;
+    private static final char[] HEXDIGITS = "0123456789abcdef".toCharArray();
+    static {
+        for (char c = 0; c < 0x20; ++c)
+            STRING_ESCAPES[c] = unicodeEscape(c);
+        STRING_ESCAPES[0x7f] = unicodeEscape((char) 0x7f);
+        STRING_ESCAPES['\b'] = "\\b";
+        STRING_ESCAPES['\t'] = "\\t";
+        STRING_ESCAPES['\n'] = "\\n";
+        STRING_ESCAPES['\f'] = "\\f";
+        STRING_ESCAPES['\r'] = "\\r";
+        STRING_ESCAPES['\\'] = "\\\\";
+        CHAR_ESCAPES = STRING_ESCAPES.clone();
+        STRING_ESCAPES['"'] = "\\\"";
+        CHAR_ESCAPES['\''] = "\\'";
+    }
+
+    private static String unicodeEscape(final char c) {
+        return new String(new char[] { '\\', 'u', HEXDIGITS[c >> 12 & 0xf], HEXDIGITS[c >> 8 & 0xf],
+                HEXDIGITS[c >> 4 & 0xf], HEXDIGITS[c & 0xf] });
+    }
+
+    private static void appendUnicodeEscape(final Appendable out, final char c) throws IOException {
+        out.append('\\').append('u').append(HEXDIGITS[c >> 12 & 0xf]).append(HEXDIGITS[c >> 8 & 0xf])
+                .append(HEXDIGITS[c >> 4 & 0xf]).append(HEXDIGITS[c & 0xf]);
+    }
+
+    /** Appends a Java string literal for value to out. */
+    public static void appendStringLiteral(final Appendable out, final CharSequence value) throws IOException {
+        out.append('"');
+        int unescapedStart = 0;
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            if (c >= 128) {
+                out.append(value, unescapedStart, i);
+                appendUnicodeEscape(out, c);
+                unescapedStart = i + 1;
+            } else if (null != STRING_ESCAPES[c]) {
+                out.append(value, unescapedStart, i).append(STRING_ESCAPES[c]);
+                unescapedStart = i + 1;
+            }
+        }
+        out.append(value, unescapedStart, value.length()).append('"');
+    }
+
+    /** Appends a Java character literal for c to out. */
+    public static void appendCharLiteral(final Appendable out, final char c) throws IOException {
+        out.append('\'');
+        if (c >= 128) appendUnicodeEscape(out, c);
+        else if (null != CHAR_ESCAPES[c]) out.append(CHAR_ESCAPES[c]);
+        else out.append(c);
+        out.append('\'');
+    }
+
+    /**
+     * Handles Lists, Sets, Maps. Sets and maps are written in a deterministic order, see {@link CanonicalOrder}.
+     */
+    private static void appendParameterizedType(final Appendable out, final Object value, final ParameterizedType type)
+            throws IOException {
         if (value instanceof List) {
             final List<?> list = (List<?>) value;
             final Type elementType = type.getActualTypeArguments()[0];
-            if (list.isEmpty()) return "java.util.Collections.<" + typename(elementType) + "> emptyList()";
-            return makeList(list, elementType);
-        }
-        if (value instanceof Set) {
+            if (list.isEmpty()) {
+                out.append("java.util.Collections.<").append(typename(elementType)).append("> emptyList()");
+            } else {
+                appendList(out, list, elementType);
+            }
+        } else if (value instanceof Set) {
             final Set<?> set = (Set<?>) value;
             final Type elementType = type.getActualTypeArguments()[0];
-            if (set.isEmpty()) return "java.util.Collections.<" + typename(elementType) + "> emptySet()";
-            return "new java.util.TreeSet<" + typename(elementType) + ">(" + makeList(set, elementType) + ")";
-        }
-        if (value instanceof Map) {
+            if (set.isEmpty()) {
+                out.append("java.util.Collections.<").append(typename(elementType)).append("> emptySet()");
+            } else {
+                final CanonicalOrder order = CanonicalOrder.of(set, elementType);
+                if (CanonicalOrder.ENUM == order) {
+                    out.append("java.util.EnumSet.of(");
+                } else {
+                    out.append("new ").append(order.setClass).append('<').append(typename(elementType))
+                            .append(">(java.util.Arrays.asList(");
+                }
+                boolean first = true;
+                for (final Keyed<Object> element : order.<Object> sort(set,
+                        element -> makeExpression(element, elementType, true))) {
+                    if (!first) out.append(", ");
+                    first = false;
+                    if (null != element.literal) out.append(element.literal);
+                    else appendExpression(out, element.element, elementType, true);
+                }
+                out.append(CanonicalOrder.ENUM == order ? ")" : "))");
+            }
+        } else if (value instanceof Map) {
             final Map<?, ?> map = (Map<?, ?>) value;
             final Type keyType = type.getActualTypeArguments()[0];
             final Type valueType = type.getActualTypeArguments()[1];
             final String signature = "<" + typename(keyType) + ", " + typename(valueType) + ">";
-            if (map.isEmpty()) return "java.util.Collections." + signature + " emptyMap()";
-            if (1 == map.size()) {
+            if (map.isEmpty()) {
+                out.append("java.util.Collections.").append(signature).append(" emptyMap()");
+            } else if (1 == map.size()) {
                 final Entry<?, ?> entry = map.entrySet().iterator().next();
-                return "java.util.Collections." + signature + " singletonMap("
-                        + makeExpression(entry.getKey(), keyType, true) + ", "
-                        + makeExpression(entry.getValue(), valueType, true) + ")";
+                out.append("java.util.Collections.").append(signature).append(" singletonMap(");
+                appendExpression(out, entry.getKey(), keyType, true);
+                out.append(", ");
+                appendExpression(out, entry.getValue(), valueType, true);
+                out.append(")");
+            } else {
+                final CanonicalOrder order = CanonicalOrder.of(map, keyType);
+                out.append("new ").append(order.mapClass).append(signature).append('(');
+                if (CanonicalOrder.ENUM == order) out.append(typename(keyType)).append(".class");
+                out.append(") {{ ");
+                for (final Keyed<Entry<?, ?>> entry : order.<Entry<?, ?>> sort(map.entrySet(),
+                        element -> makeExpression(element.getKey(), keyType, true))) {
+                    out.append("put(");
+                    if (null != entry.literal) out.append(entry.literal);
+                    else appendExpression(out, entry.element.getKey(), keyType, true);
+                    out.append(", ");
+                    appendExpression(out, entry.element.getValue(), valueType, true);
+                    out.append("); ");
+                }
+                out.append("}}");
             }
-            final StringBuilder buf = new StringBuilder("new java.util.TreeMap" + signature + "() {{ ");
-            for (final Entry<?, ?> entry : map.entrySet()) {
-                buf.append("put(").append(makeExpression(entry.getKey(), keyType, true)).append(", ");
-                buf.append(makeExpression(entry.getValue(), valueType, true)).append("); ");
-            }
-            return buf + "}}";
+        } else {
+            throw new IllegalArgumentException("Type not yet supported; extend makeParameterizedType for "
+                    + value.getClass() + " with type " + type);
+        }
+    }
+
+    /** Java code creating an array of the given length, e.g. "new int[3][]" for an int[][]. */
+    static String newArray(final Class<?> componentType, final int length) {
+        Class<?> elementType = componentType;
+        final StringBuilder dimensions = new StringBuilder("[").append(length).append(']');
+        while (elementType.isArray()) {
+            dimensions.append("[]");
+            elementType = elementType.getComponentType();
         }
-        throw new IllegalArgumentException("Type not yet supported; extend makeParameterizedType for "
-                + value.getClass() + " with type " + type);
+        return "new " + typename(elementType) + dimensions;
     }
 
     /** Java name of the type */
-    private static String typename(final Type elementType) {
+    static String typename(final Type elementType) {
         if (elementType instanceof Class) {
             final Class<?> clazz = (Class<?>) elementType;
-            String name = clazz.getName();
-            if (name.startsWith("java.lang.")) name = name.substring("java.lang.".length());
+            if (clazz.isArray()) return typename(clazz.getComponentType()) + "[]";
+            String name = null == clazz.getCanonicalName() ? clazz.getName() : clazz.getCanonicalName();
+            if (!clazz.isPrimitive() && "java.lang".equals(clazz.getPackageName()))
+                name = name.substring("java.lang.".length());
             return name;
         }
+        if (elementType instanceof ParameterizedType) {
+            final ParameterizedType ptype = (ParameterizedType) elementType;
+            final StringBuilder buf = new StringBuilder(typename(ptype.getRawType())).append('<');
+            final Type[] typeArguments = ptype.getActualTypeArguments();
+            for (int i = 0; i < typeArguments.length; ++i) {
+                if (0 < i) buf.append(", ");
+                buf.append(typename(typeArguments[i]));
+            }
+            return buf.append('>').toString();
+        }
         throw new IllegalArgumentException("Type not yet supported - please extend: " + elementType);
     }
 
-    private static String makeList(final Collection<?> list, final Type elementType) throws IllegalArgumentException {
-        final StringBuilder buf = new StringBuilder("java.util.Arrays.asList(");
+    private static void appendList(final Appendable out, final Collection<?> list, final Type elementType)
+            throws IOException, IllegalArgumentException {
+        out.append("java.util.Arrays.asList(");
         boolean first = true;
         for (final Object element : list) {
-            if (!first) buf.append(", ");
+            if (!first) out.append(", ");
             first = false;
-            buf.append(makeExpression(element, elementType, true));
+            appendExpression(out, element, elementType, true);
         }
-        return buf + ")";
+        out.append(")");
     }
 
 }
@@ -0,0 +1,18 @@
+package net.stoerr.devtools.miscjavadevtools.codegenerator;
+
+import java.io.IOException;
+
+/**
+ * Writes a Java expression recreating a value of one type; can be registered for a type with
+ * {@link ValueCodeGenerator#registerRenderer(Class, ValueRenderer)}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public interface ValueRenderer {
+
+    /**
+     * Appends the Java expression for value, which is never null, to out.
+     * @param autoboxingEnabled iff true we do not need to generate Integer.valueOf etc. for wrapper types
+     */
+    void render(Appendable out, Object value, boolean autoboxingEnabled) throws IOException;
+
+}
@@ -1,36 +1,70 @@
 package net.stoerr.devtools.miscjavadevtools.testutils;
 
-import java.lang.reflect.Method;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import net.stoerr.devtools.miscjavadevtools.codegenerator.BeanDescriptor;
+import net.stoerr.devtools.miscjavadevtools.codegenerator.BeanProperty;
 import net.stoerr.devtools.miscjavadevtools.codegenerator.ValueCodeGenerator;
 
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.commons.lang3.exception.ContextedRuntimeException;
 
 /**
- * Utility that fills all attributes Java Beans with predefined values for testing purposes.
+ * Utility that fills all attributes Java Beans with predefined values for testing purposes. For test data in bulk
+ * {@link #fillBeans(Class, int, int)} creates a stream of filled beans, and
+ * {@link #export(Class, int, int, ExportFormat, Appendable)} writes the same values as CSV or JSON Lines without
+ * creating beans at all.
  * @author Hans-Peter Störr www.stoerr.net
  */
 public class SimpleBeanFiller {
 
     private final int perturbation;
 
+    private int maxDepth = 3;
+
+    private int minCollectionSize = 2;
+
+    private int maxCollectionSize = 3;
+
+    private int maxObjects = 10000;
+
+    /** Immutable, so that all beans share it. */
+    private Distributions distributions = Distributions.LEGACY;
+
     /**
      * Fills a Java Bean with values determined by the property name and the perturbation.
      * @param bean bean to fill, not null.
-     * @param perturbation a value that is used to change the values accordingly. Different perturbations give different
-     *            fillings.
+     * @param perturbation a value that is used to change the values accordingly. Different perturbations give
+     *            different fillings.
      * @return bean
      */
     public static <T> T fillBean(final T bean, final int perturbation) {
@@ -39,35 +73,287 @@ public class SimpleBeanFiller {
     }
 
     /**
-     * @param perturbation a value that is used to change the values accordingly. Different perturbations give different
-     *            fillings.
+     * Lazily creates beans of beanClass with its default constructor and fills them like
+     * {@link #fillBean(Object, int)}, one bean for each perturbation from fromPerturbation (inclusive) to
+     * toPerturbation (exclusive). The constructor and the setters are determined only once per class. The stream is
+     * sized and splits its perturbation range evenly, so it can be made {@link Stream#parallel()} to fill the beans on
+     * all cores; the beans are the same in any case.
+     */
+    public static <T> Stream<T> fillBeans(final Class<T> beanClass, final int fromPerturbation,
+            final int toPerturbation) {
+        return new SimpleBeanFiller(fromPerturbation).createBeans(beanClass, toPerturbation - fromPerturbation);
+    }
+
+    /**
+     * Writes the values {@link #fillBeans(Class, int, int)} would put into the beans directly to out, one row per
+     * perturbation from fromPerturbation (inclusive) to toPerturbation (exclusive), without creating the beans. The
+     * columns are the setter properties in the order of the setter names. Please use a buffered out.
+     */
+    public static void export(final Class<?> beanClass, final int fromPerturbation, final int toPerturbation,
+            final ExportFormat format, final Appendable out) throws IOException {
+        new SimpleBeanFiller(fromPerturbation).exportBeans(beanClass, toPerturbation - fromPerturbation, format, out);
+    }
+
+    /**
+     * Like {@link #export(Class, int, int, ExportFormat, Appendable)}, but writes UTF-8 to channel through a large
+     * buffer. The channel is not closed.
+     */
+    public static void export(final Class<?> beanClass, final int fromPerturbation, final int toPerturbation,
+            final ExportFormat format, final WritableByteChannel channel) throws IOException {
+        final Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1),
+                1 << 16);
+        export(beanClass, fromPerturbation, toPerturbation, format, writer);
+        writer.flush();
+    }
+
+    /**
+     * The formats for {@link SimpleBeanFiller#export(Class, int, int, ExportFormat, Appendable)}. Dates and calendars
+     * are written as ISO-8601 instants, enums with their names, collections as JSON arrays and maps as JSON objects.
+     * Nested beans are written as JSON objects with their properties and an additional "$id"; a bean that occurs
+     * again in the same row is written as {"$ref":id} instead. The row itself has id 1.
+     */
+    public enum ExportFormat {
+
+        /** Comma separated values as in RFC 4180, with a header line of the property names and CRLF line ends. */
+        CSV {
+            @Override
+            void writeHeader(final Appendable out, final String[] names) throws IOException {
+                for (int i = 0; i < names.length; ++i) {
+                    if (0 < i) out.append(',');
+                    appendCsvField(out, names[i]);
+                }
+                out.append("\r\n");
+            }
+
+            @Override
+            void writeRow(final Appendable out, final String[] names, final BeanValues row) throws IOException {
+                for (int i = 0; i < row.values.length; ++i) {
+                    if (0 < i) out.append(',');
+                    final Object value = row.values[i];
+                    if (value instanceof Collection || value instanceof Map || value instanceof BeanValues) {
+                        final StringBuilder json = new StringBuilder();
+                        appendJson(json, value);
+                        appendCsvField(out, json);
+                    } else if (null != value) {
+                        appendCsvField(out, text(value));
+                    }
+                }
+                out.append("\r\n");
+            }
+        },
+
+        /** One JSON object per line, with the property names as keys. */
+        JSON_LINES {
+            @Override
+            void writeHeader(final Appendable out, final String[] names) {
+                // none
+            }
+
+            @Override
+            void writeRow(final Appendable out, final String[] names, final BeanValues row) throws IOException {
+                out.append('{');
+                for (int i = 0; i < row.values.length; ++i) {
+                    if (0 < i) out.append(',');
+                    ValueCodeGenerator.appendStringLiteral(out, names[i]);
+                    out.append(':');
+                    appendJson(out, row.values[i]);
+                }
+                out.append("}\n");
+            }
+        };
+
+        abstract void writeHeader(Appendable out, String[] names) throws IOException;
+
+        /** Writes the values of the row, which is already marked as {@link BeanValues#written}. */
+        abstract void writeRow(Appendable out, String[] names, BeanValues row) throws IOException;
+
+        /** Quotes the field only if it contains a comma, a quote or a line break. */
+        private static void appendCsvField(final Appendable out, final CharSequence field) throws IOException {
+            boolean needsQuotes = false;
+            for (int i = 0; i < field.length() && !needsQuotes; ++i) {
+                final char c = field.charAt(i);
+                needsQuotes = ',' == c || '"' == c || '\r' == c || '\n' == c;
+            }
+            if (!needsQuotes) {
+                out.append(field);
+                return;
+            }
+            out.append('"');
+            for (int i = 0; i < field.length(); ++i) {
+                final char c = field.charAt(i);
+                if ('"' == c) out.append('"');
+                out.append(c);
+            }
+            out.append('"');
+        }
+
+        /** The Java string literals of {@link ValueCodeGenerator} are valid JSON strings, too. */
+        private static void appendJson(final Appendable out, final Object value) throws IOException {
+            if (null == value || value instanceof Number || value instanceof Boolean) {
+                out.append(String.valueOf(value));
+            } else if (value instanceof Collection) {
+                out.append('[');
+                boolean first = true;
+                for (final Object element : (Collection<?>) value) {
+                    if (!first) out.append(',');
+                    first = false;
+                    appendJson(out, element);
+                }
+                out.append(']');
+            } else if (value instanceof Map) {
+                out.append('{');
+                boolean first = true;
+                for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    if (!first) out.append(',');
+                    first = false;
+                    ValueCodeGenerator.appendStringLiteral(out, text(entry.getKey()));
+                    out.append(':');
+                    appendJson(out, entry.getValue());
+                }
+                out.append('}');
+            } else if (value instanceof BeanValues) {
+                appendJson(out, (BeanValues) value);
+            } else {
+                ValueCodeGenerator.appendStringLiteral(out, text(value));
+            }
+        }
+
+        private static void appendJson(final Appendable out, final BeanValues bean) throws IOException {
+            if (bean.written) {
+                out.append("{\"$ref\":").append(Integer.toString(bean.id)).append('}');
+                return;
+            }
+            bean.written = true;
+            out.append("{\"$id\":").append(Integer.toString(bean.id));
+            for (int i = 0; i < bean.values.length; ++i) {
+                out.append(',');
+                ValueCodeGenerator.appendStringLiteral(out, bean.plan.setters.get(i).getName());
+                out.append(':');
+                appendJson(out, bean.values[i]);
+            }
+            out.append('}');
+        }
+
+        /** The text of a simple value. */
+        private static String text(final Object value) {
+            if (value instanceof Calendar) return ((Calendar) value).toInstant().toString();
+            if (value instanceof Date) return ((Date) value).toInstant().toString();
+            if (value instanceof Enum) return ((Enum<?>) value).name();
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * @param perturbation a value that is used to change the values accordingly. Different perturbations give
+     *            different fillings.
      */
     public SimpleBeanFiller(final int perturbation) {
         this.perturbation = perturbation;
     }
 
+    /**
+     * Sets how deep nested beans are created below the filled bean - default 3. Below that, bean properties get an
+     * already created bean of the property class, if there is one (which may make the object graph cyclic), or null.
+     */
+    public SimpleBeanFiller withMaxDepth(final int maxDepth) {
+        if (maxDepth < 0) throw new IllegalArgumentException("Need non-negative depth but got " + maxDepth);
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /** Sets the range for the number of elements of generated collections - default 2 to 3. */
+    public SimpleBeanFiller withCollectionSizes(final int minCollectionSize, final int maxCollectionSize) {
+        if (minCollectionSize < 0 || maxCollectionSize < minCollectionSize)
+            throw new IllegalArgumentException("Invalid collection sizes " + minCollectionSize + " to "
+                    + maxCollectionSize);
+        this.minCollectionSize = minCollectionSize;
+        this.maxCollectionSize = maxCollectionSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of beans created for one filled bean, including itself - default 10000. If that is
+     * exhausted, bean properties are treated as below the maximum depth.
+     */
+    public SimpleBeanFiller withMaxObjects(final int maxObjects) {
+        this.maxObjects = maxObjects;
+        return this;
+    }
+
+    /**
+     * Sets the distribution of the pseudorandom numbers all values are derived from - default
+     * {@link Distribution#LEGACY}.
+     */
+    public SimpleBeanFiller withDistribution(final Distribution distribution) {
+        distributions = distributions.withDefault(distribution);
+        return this;
+    }
+
+    /**
+     * Sets the distribution for the properties with the given name (as in {@link BeanProperty#getName()}) in all
+     * beans, e.g. {@link Distribution#SEQUENTIAL} for an id.
+     */
+    public SimpleBeanFiller withDistribution(final String propertyName, final Distribution distribution) {
+        distributions = distributions.with(nameId(propertyName.substring(0, 1).toUpperCase()
+                + propertyName.substring(1)), distribution);
+        return this;
+    }
+
+    /**
+     * Creates a bean with its default constructor and fills it, including nested beans and collections of beans as
+     * configured with {@link #withMaxDepth(int)}, {@link #withCollectionSizes(int, int)} and
+     * {@link #withMaxObjects(int)}. Nested beans are filled with perturbations derived from the property names and the
+     * perturbation; beans of the same class with the same perturbation are created only once and shared.
+     */
+    public <T> T createBean(final Class<T> beanClass) {
+        return beanClass.cast(newGraph(false).root(PLANS.get(beanClass), perturbation));
+    }
+
+    /**
+     * Like {@link #fillBeans(Class, int, int)} for the perturbations from the perturbation of this filler on, but with
+     * the configuration of this filler.
+     */
+    public <T> Stream<T> createBeans(final Class<T> beanClass, final int count) {
+        final FillPlan plan = PLANS.get(beanClass);
+        return IntStream.range(perturbation, perturbation + count).mapToObj(
+                beanPerturbation -> beanClass.cast(newGraph(false).root(plan, beanPerturbation)));
+    }
+
+    /**
+     * Like {@link #export(Class, int, int, ExportFormat, Appendable)} for the perturbations from the perturbation of
+     * this filler on, but with the configuration of this filler.
+     */
+    public void exportBeans(final Class<?> beanClass, final int count, final ExportFormat format,
+            final Appendable out) throws IOException {
+        final FillPlan plan = PLANS.get(beanClass);
+        final String[] names = new String[plan.setters.size()];
+        for (int i = 0; i < names.length; ++i) {
+            names[i] = plan.setters.get(i).getName();
+        }
+        format.writeHeader(out, names);
+        for (int rowPerturbation = perturbation; rowPerturbation < perturbation + count; ++rowPerturbation) {
+            final BeanValues row = (BeanValues) newGraph(true).root(plan, rowPerturbation);
+            row.written = true;
+            format.writeRow(out, names, row);
+        }
+    }
+
+    /** @param export whether to create {@link BeanValues} instead of beans */
+    private Graph newGraph(final boolean export) {
+        return new Graph(maxDepth, minCollectionSize, maxCollectionSize, maxObjects, distributions, export);
+    }
+
     /**
      * Fills a Java Bean with values determined by the property name and the perturbation.
      * @param bean
-     * @deprecated to be independent from further changes please use {@link #beanFillerCode(String, Object)} to generate
-     *             the corresponding code.
+     * @deprecated to be independent from further changes please use {@link #beanFillerCode(String, Object)} to
+     *             generate the corresponding code.
      */
     @Deprecated
     public void fillBean(final Object bean) {
-        try {
-            for (final Method method : bean.getClass().getMethods()) {
-                if (!Modifier.isPublic(method.getModifiers()) || method.getParameterTypes().length != 1
-                        || !method.getName().startsWith("set")) {
-                    continue;
-                }
-                final Object value = perturbedValue(propertyName(method), method.getGenericParameterTypes()[0]);
-                method.invoke(bean, value);
-            }
-        } catch (final RuntimeException e) {
-            throw e;
-        } catch (final Exception e) {
-            throw new RuntimeException(e);
-        }
+        final Graph graph = newGraph(false);
+        graph.register(bean.getClass(), bean, perturbation);
+        PLANS.get(bean.getClass()).fill(bean, perturbation, graph);
     }
 
     /**
@@ -77,18 +363,14 @@ public class SimpleBeanFiller {
     public String beanFillerCode(String varname, final Object bean) {
         final StringBuilder buf = new StringBuilder();
         try {
-            final Method[] methods = bean.getClass().getMethods();
-            Arrays.sort(methods, METHODNAMECOMPARATOR);
-            for (final Method method : methods) {
-                if (!Modifier.isPublic(method.getModifiers()) || method.getParameterTypes().length != 1
-                        || !method.getName().startsWith("set")) {
-                    continue;
-                }
-
-                final Type type = method.getGenericParameterTypes()[0];
-                final Object value = perturbedValue(propertyName(method), type);
-                buf.append(varname).append(".").append(method.getName()).append('(').append(
-                        ValueCodeGenerator.makeExpression(value, type, true)).append(");\n");
+            final FillPlan plan = PLANS.get(bean.getClass());
+            final Graph graph = newGraph(false);
+            for (int i = 0; i < plan.setters.size(); ++i) {
+                final BeanProperty setter = plan.setters.get(i);
+                final Object value = plan.generators[i].generate(perturbation, graph);
+                buf.append(varname).append(".").append(setter.getMethod().getName()).append('(');
+                ValueCodeGenerator.appendExpression(buf, value, setter.getType(), true);
+                buf.append(");\n");
             }
         } catch (final RuntimeException e) {
             throw e;
@@ -116,83 +398,449 @@ public class SimpleBeanFiller {
         return rep;
     }
 
-    /** Basic name of the property - without get/set/is. */
-    private String propertyName(final Method method) {
-        final String name = method.getName();
-        if (name.startsWith("set") || name.startsWith("get")) { return name.substring(3); }
-        if (name.startsWith("is")) { return name.substring(2); }
-        throw new IllegalArgumentException("Bug: Unknow attribute accessor name " + name);
+    /** Yields a value for one perturbation. Created once per property by {@link #generator(String, Type)}. */
+    private interface ValueGenerator {
+        Object generate(int perturbation, Graph graph);
+    }
+
+    /** The part of the pseudorandom number that depends only on the name. */
+    private static int nameTerm(final String name) {
+        return 1322837333 * hash(name);
     }
 
+    private static final Map<String, Integer> NAME_IDS = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger NEXT_NAME_ID = new AtomicInteger();
+
     /**
-     * Yields a value of Class clazz that depends on name and perturbation. Complete with more types as necessary.
+     * A small number that is unique for the name, so that the distribution of a property can be found by index in
+     * {@link Distributions} - {@link #nameTerm(String)} could collide.
      */
-    private Object perturbedValue(final String name, final Type type) {
-        final int pseudorandomnumber = Math.abs(1322837333 * hash(name) + 486187739 * perturbation);
+    private static int nameId(final String name) {
+        return NAME_IDS.computeIfAbsent(name, n -> NEXT_NAME_ID.getAndIncrement());
+    }
+
+    /** The pseudorandom number for a name with {@link #nameTerm(String)} and the perturbation. */
+    private static int pseudorandom(final int nameTerm, final int perturbation) {
+        return Math.abs(nameTerm + 486187739 * perturbation);
+    }
+
+    private static boolean booleanValue(final int pseudorandom) {
+        return 1 == pseudorandom % 2;
+    }
+
+    private static int intValue(final int pseudorandom) {
+        return pseudorandom + 256;
+    }
+
+    private static char charValue(final int pseudorandom) {
+        return (char) (pseudorandom % 32 + 'A');
+    }
+
+    private static long longValue(final int pseudorandom) {
+        return pseudorandom + (long) Integer.MAX_VALUE;
+    }
+
+    /**
+     * The distribution of the pseudorandom numbers the values are derived from. {@link #LEGACY} keeps the values of
+     * earlier versions. The other distributions compute the numbers with the SplitMix64 mixing function from a key
+     * derived from the property name and the perturbation as counter - like a {@link java.util.SplittableRandom} per
+     * property that is advanced to the perturbation. So each value can be computed independently, in any order and on
+     * any thread - e.g. in parallel streams - and is always the same. The collection sizes and the perturbations of
+     * nested beans do not depend on the distribution.
+     */
+    public abstract static class Distribution {
+
+        /**
+         * Math.abs(1322837333 * hash(name) + 486187739 * perturbation), and strings contain the perturbation: the
+         * values of earlier versions. There are only few different values per property, and they can be negative.
+         */
+        public static final Distribution LEGACY = new Distribution() {
+            @Override
+            int next(final int nameTerm, final int perturbation) {
+                return pseudorandom(nameTerm, perturbation);
+            }
+
+            @Override
+            int key(final int nameTerm, final int perturbation) {
+                return perturbation;
+            }
+        };
+
+        /** Uniformly distributed numbers from 0 to 2<sup>30</sup>-1, so that e.g. int values do not overflow. */
+        public static final Distribution UNIFORM = new Distribution() {
+            @Override
+            int next(final int nameTerm, final int perturbation) {
+                return (int) (bits(nameTerm, perturbation) >>> 34);
+            }
+        };
+
+        /** The perturbation itself (without sign), which gives e.g. unique ascending keys. */
+        public static final Distribution SEQUENTIAL = new Distribution() {
+            @Override
+            int next(final int nameTerm, final int perturbation) {
+                return perturbation & Integer.MAX_VALUE;
+            }
+        };
+
+        /**
+         * Numbers from 0 to n-1, where k has a probability proportional to 1/(k+1)<sup>exponent</sup> - a few values
+         * are frequent, most are rare, as often in real data. Needs a table of n doubles.
+         */
+        public static Distribution zipfian(final int n, final double exponent) {
+            if (n < 1) throw new IllegalArgumentException("Need positive number of values but got " + n);
+            final double[] cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; ++k) {
+                sum += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; ++k) {
+                cumulative[k] /= sum;
+            }
+            cumulative[n - 1] = 1;
+            return new Distribution() {
+                @Override
+                int next(final int nameTerm, final int perturbation) {
+                    final double uniform = (bits(nameTerm, perturbation) >>> 11) * 0x1.0p-53;
+                    final int index = Arrays.binarySearch(cumulative, uniform);
+                    return index >= 0 ? Math.min(index + 1, n - 1) : -index - 1;
+                }
+            };
+        }
+
+        private Distribution() {
+            // only the predefined distributions
+        }
+
+        /** The non-negative pseudorandom number for the property with {@link #nameTerm(String)} and perturbation. */
+        abstract int next(int nameTerm, int perturbation);
+
+        /** The number contained in generated strings. */
+        int key(final int nameTerm, final int perturbation) {
+            return next(nameTerm, perturbation);
+        }
+
+        /** The SplitMix64 output for the perturbation as counter in the sequence with a seed derived from nameTerm. */
+        static long bits(final int nameTerm, final int perturbation) {
+            return mix64(mix64(nameTerm) + perturbation * 0x9e3779b97f4a7c15L);
+        }
+
+        private static long mix64(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * The distributions of a filler: a default and those of single properties, indexed by {@link #nameId(String)}.
+     * Changing it creates a new one.
+     */
+    private static final class Distributions {
+
+        static final Distributions LEGACY = new Distributions(Distribution.LEGACY, new Distribution[0]);
+
+        private final Distribution distribution;
+        /** By name id; null where the default applies. */
+        private final Distribution[] byNameId;
+
+        private Distributions(final Distribution distribution, final Distribution[] byNameId) {
+            this.distribution = distribution;
+            this.byNameId = byNameId;
+        }
+
+        Distributions withDefault(final Distribution newDefault) {
+            return new Distributions(newDefault, byNameId);
+        }
+
+        Distributions with(final int nameId, final Distribution propertyDistribution) {
+            final Distribution[] changed = Arrays.copyOf(byNameId, Math.max(byNameId.length, nameId + 1));
+            changed[nameId] = propertyDistribution;
+            return new Distributions(distribution, changed);
+        }
+
+        Distribution get(final int nameId) {
+            final Distribution propertyDistribution = nameId < byNameId.length ? byNameId[nameId] : null;
+            return null != propertyDistribution ? propertyDistribution : distribution;
+        }
+    }
+
+    /**
+     * Yields a generator for values of the type that depend on name and perturbation. Everything that does not
+     * depend on the perturbation - the type dispatch, the hashes of the name and of the element names of collections -
+     * is done here, once per property. Complete with more types as necessary.
+     */
+    private static ValueGenerator generator(final String name, final Type type) {
+        final int nameTerm = nameTerm(name);
+        final int nameId = nameId(name);
 
         if (String.class.equals(type)) {
-            return name + "#" + perturbation;
+            final String prefix = name + "#";
+            return (perturbation, graph) -> prefix + graph.key(nameId, nameTerm, perturbation);
         } else if (Boolean.TYPE.equals(type) || Boolean.class.equals(type)) {
-            return 1 == pseudorandomnumber % 2;
+            return (perturbation, graph) -> booleanValue(graph.pseudorandom(nameId, nameTerm, perturbation));
         } else if (Integer.TYPE.equals(type) || Integer.class.equals(type)) {
-            return pseudorandomnumber + 256;
+            return (perturbation, graph) -> intValue(graph.pseudorandom(nameId, nameTerm, perturbation));
         } else if (Character.TYPE.equals(type) || Character.class.equals(type)) {
-            return (char) (pseudorandomnumber % 32 + 'A');
+            return (perturbation, graph) -> charValue(graph.pseudorandom(nameId, nameTerm, perturbation));
         } else if (Long.TYPE.equals(type) || Long.class.equals(type)) {
-            return pseudorandomnumber + (long) Integer.MAX_VALUE;
+            return (perturbation, graph) -> longValue(graph.pseudorandom(nameId, nameTerm, perturbation));
         } else if (GregorianCalendar.class.equals(type)) {
-            final GregorianCalendar cal = new GregorianCalendar(Locale.GERMANY);
-            cal.setTimeInMillis(new java.util.Date(105, 05, 04, 03, 02, 01).getTime() + 1000L
-                    * (pseudorandomnumber % 70000000L));
-            return cal;
+            final long start = new GregorianCalendar(2005, 5, 4, 3, 2, 1).getTimeInMillis();
+            return (perturbation, graph) -> {
+                final GregorianCalendar cal = new GregorianCalendar(Locale.GERMANY);
+                cal.setTimeInMillis(start + 1000L * (graph.pseudorandom(nameId, nameTerm, perturbation) % 70000000L));
+                return cal;
+            };
 
         } else if (type instanceof Class) {
             final Class<?> clazz = (Class<?>) type;
             if (clazz.isAssignableFrom(Date.class)) {
-                return new Date(new java.util.Date(100, 01, 02, 03, 04, 05).getTime() + 1000L
-                        * (pseudorandomnumber % 70000000L));
+                final long start = new GregorianCalendar(2000, 1, 2, 3, 4, 5).getTimeInMillis();
+                return (perturbation, graph) -> new Date(start + 1000L
+                        * (graph.pseudorandom(nameId, nameTerm, perturbation) % 70000000L));
             } else if (clazz.isEnum()) {
                 final Object[] values = clazz.getEnumConstants();
-                return values[pseudorandomnumber % values.length];
+                return (perturbation, graph) -> values[graph.pseudorandom(nameId, nameTerm, perturbation)
+                        % values.length];
+            } else if (isBeanClass(clazz)) {
+                return (perturbation, graph) -> graph.bean(clazz, pseudorandom(nameTerm, perturbation));
             }
         } else if (type instanceof ParameterizedType) { // Generation for generics
                                                         // like List, Map, Set.
             final ParameterizedType ptype = (ParameterizedType) type;
             final Class<?> clazz = (Class<?>) ptype.getRawType();
-            final int cnt = pseudorandomnumber % 2 + 2;
 
             if (clazz.isAssignableFrom(ArrayList.class)) {
-                final Type parmType = ptype.getActualTypeArguments()[0];
-                final ArrayList<Object> res = new ArrayList<Object>();
-                for (int i = 0; i < cnt; ++i) {
-                    res.add(perturbedValue(name + "$" + i, parmType));
-                }
-                return res;
+                final ElementGenerators elements = new ElementGenerators(name, ptype.getActualTypeArguments()[0]);
+                return (perturbation, graph) -> {
+                    final int cnt = graph.collectionSize(pseudorandom(nameTerm, perturbation));
+                    final ArrayList<Object> res = new ArrayList<Object>();
+                    for (int i = 0; i < cnt; ++i) {
+                        res.add(elements.get(i).generate(perturbation, graph));
+                    }
+                    return res;
+                };
 
             } else if (clazz.isAssignableFrom(HashMap.class)) {
-                final Type keyType = ptype.getActualTypeArguments()[0];
-                final Type valueType = ptype.getActualTypeArguments()[1];
-                final HashMap<Object, Object> res = new HashMap<Object, Object>();
-                for (int i = 0; i < cnt; ++i) {
-                    res.put(perturbedValue(name + "$" + i, keyType), perturbedValue(name + "$" + i, valueType));
-                }
-                return res;
+                final ElementGenerators keys = new ElementGenerators(name, ptype.getActualTypeArguments()[0]);
+                final ElementGenerators values = new ElementGenerators(name, ptype.getActualTypeArguments()[1]);
+                return (perturbation, graph) -> {
+                    final int cnt = graph.collectionSize(pseudorandom(nameTerm, perturbation));
+                    final HashMap<Object, Object> res = new HashMap<Object, Object>();
+                    for (int i = 0; i < cnt; ++i) {
+                        res.put(keys.get(i).generate(perturbation, graph),
+                                values.get(i).generate(perturbation, graph));
+                    }
+                    return res;
+                };
             } else if (clazz.isAssignableFrom(HashSet.class)) {
-                final Type valueType = ptype.getActualTypeArguments()[0];
-                final HashSet<Object> res = new HashSet<Object>();
-                for (int i = 0; i < cnt; ++i) {
-                    res.add(perturbedValue(name + "$" + i, valueType));
+                final ElementGenerators elements = new ElementGenerators(name, ptype.getActualTypeArguments()[0]);
+                return (perturbation, graph) -> {
+                    final int cnt = graph.collectionSize(pseudorandom(nameTerm, perturbation));
+                    final HashSet<Object> res = new HashSet<Object>();
+                    for (int i = 0; i < cnt; ++i) {
+                        res.add(elements.get(i).generate(perturbation, graph));
+                    }
+                    return res;
+                };
+            }
+        }
+
+        // we fail only when a value is actually needed, as before
+        return (perturbation, graph) -> {
+            throw new IllegalArgumentException("No example generation for type " + type
+                    + " implemented. Please extend generator.");
+        };
+    }
+
+    /**
+     * Classes we fill recursively: concrete classes with a default constructor, except those of the JDK, whose setters
+     * are usually no bean properties.
+     */
+    private static boolean isBeanClass(final Class<?> clazz) {
+        if (clazz.isPrimitive() || clazz.isArray() || clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers()))
+            return false;
+        final String name = clazz.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+                || name.startsWith("sun."))
+            return false;
+        try {
+            clazz.getDeclaredConstructor();
+            return true;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The generators for the elements of a collection named name, which are named name$0, name$1, ... The generators
+     * for the default collection sizes are created immediately, more on demand.
+     */
+    private static final class ElementGenerators {
+
+        private final String name;
+        private final Type elementType;
+        private volatile ValueGenerator[] generators = new ValueGenerator[0];
+
+        ElementGenerators(final String name, final Type elementType) {
+            this.name = name;
+            this.elementType = elementType;
+            get(2);
+        }
+
+        ValueGenerator get(final int i) {
+            final ValueGenerator[] current = generators;
+            if (i < current.length) return current[i];
+            synchronized (this) {
+                if (i >= generators.length) {
+                    final ValueGenerator[] grown = Arrays.copyOf(generators, Math.max(i + 1, 2 * generators.length));
+                    for (int j = generators.length; j < grown.length; ++j) {
+                        grown[j] = generator(name + "$" + j, elementType);
+                    }
+                    generators = grown;
                 }
-                return res;
+                return generators[i];
             }
         }
+    }
 
-        throw new IllegalArgumentException("No example generation for type " + type
-                + " implemented. Please extend perturbedValue.");
+    /**
+     * The state while filling one bean: the budgets, the distributions, and the beans created so far by class and
+     * perturbation, which are shared for equal perturbations and reused when a budget is exhausted. For an export the
+     * beans are just {@link BeanValues}.
+     */
+    private static final class Graph {
+
+        private final int maxDepth;
+        private final int minCollectionSize;
+        private final int maxCollectionSize;
+        private int remainingObjects;
+        private int depth;
+        private final Distributions distributions;
+        /** Whether to create {@link BeanValues} instead of beans. */
+        private final boolean export;
+        private int exported;
+        /** The first bean registered - kept apart from {@link #beans} since most beans have no nested beans. */
+        private Object root;
+        private Class<?> rootClass;
+        private int rootPerturbation;
+        /** The other beans, created lazily. */
+        private Map<Class<?>, Map<Integer, Object>> beans;
+
+        Graph(final int maxDepth, final int minCollectionSize, final int maxCollectionSize, final int maxObjects,
+                final Distributions distributions, final boolean export) {
+            this.maxDepth = maxDepth;
+            this.minCollectionSize = minCollectionSize;
+            this.maxCollectionSize = maxCollectionSize;
+            this.remainingObjects = maxObjects;
+            this.distributions = distributions;
+            this.export = export;
+        }
+
+        /** The pseudorandom number for values of the property with the {@link #nameId(String)} and name term. */
+        int pseudorandom(final int nameId, final int nameTerm, final int perturbation) {
+            return distributions.get(nameId).next(nameTerm, perturbation);
+        }
+
+        /** The number contained in generated strings. */
+        int key(final int nameId, final int nameTerm, final int perturbation) {
+            return distributions.get(nameId).key(nameTerm, perturbation);
+        }
+
+        int collectionSize(final int pseudorandom) {
+            return minCollectionSize + Math.floorMod(pseudorandom, maxCollectionSize - minCollectionSize + 1);
+        }
+
+        void register(final Class<?> beanClass, final Object bean, final int perturbation) {
+            --remainingObjects;
+            if (null == root) {
+                root = bean;
+                rootClass = beanClass;
+                rootPerturbation = perturbation;
+                return;
+            }
+            if (null == beans) beans = new HashMap<>();
+            Map<Integer, Object> ofClass = beans.get(beanClass);
+            if (null == ofClass) {
+                ofClass = new LinkedHashMap<>();
+                beans.put(beanClass, ofClass);
+            }
+            ofClass.put(perturbation, bean);
+        }
+
+        Object root(final FillPlan plan, final int perturbation) {
+            final Object bean = newBean(plan);
+            register(plan.beanClass, bean, perturbation);
+            fill(plan, bean, perturbation);
+            return bean;
+        }
+
+        private Object newBean(final FillPlan plan) {
+            return export ? new BeanValues(plan, ++exported) : plan.newBean();
+        }
+
+        private void fill(final FillPlan plan, final Object bean, final int perturbation) {
+            if (export) ((BeanValues) bean).fill(perturbation, this);
+            else plan.fill(bean, perturbation, this);
+        }
+
+        /**
+         * The bean of beanClass for the perturbation: an existing one, a new one if the budgets allow, else the first
+         * bean of that class created, if any.
+         */
+        Object bean(final Class<?> beanClass, final int perturbation) {
+            final boolean ofRootClass = beanClass == rootClass;
+            if (ofRootClass && perturbation == rootPerturbation) return root;
+            final Map<Integer, Object> ofClass = null != beans ? beans.get(beanClass) : null;
+            final Object existing = null != ofClass ? ofClass.get(perturbation) : null;
+            if (null != existing) return existing;
+            if (depth >= maxDepth || remainingObjects <= 0) {
+                if (ofRootClass) return root;
+                return null != ofClass ? ofClass.values().iterator().next() : null;
+            }
+            final FillPlan plan = PLANS.get(beanClass);
+            final Object bean = newBean(plan);
+            register(beanClass, bean, perturbation);
+            ++depth;
+            try {
+                fill(plan, bean, perturbation);
+            } finally {
+                --depth;
+            }
+            return bean;
+        }
+    }
+
+    /**
+     * Instead of a bean for an export: the values that would be set into the bean, with an id for references to it.
+     */
+    private static final class BeanValues {
+
+        final FillPlan plan;
+        /** Numbers the beans of a row from 1. */
+        final int id;
+        /** The values for the {@link FillPlan#setters}, same index. */
+        final Object[] values;
+        /** Whether it has already been written, so that it's referenced from now on. */
+        boolean written;
+
+        BeanValues(final FillPlan plan, final int id) {
+            this.plan = plan;
+            this.id = id;
+            this.values = new Object[plan.generators.length];
+        }
+
+        void fill(final int perturbation, final Graph graph) {
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = plan.generators[i].generate(perturbation, graph);
+            }
+        }
     }
 
     /** More sensible hash than {@link String#hashCode()}. */
-    private int hash(final String val) {
+    private static int hash(final String val) {
         int res = 92821;
         for (int i = 0; i < val.length(); ++i) {
             res = (res + val.charAt(i)) * 92821;
@@ -200,12 +848,128 @@ public class SimpleBeanFiller {
         return res;
     }
 
-    private static final Comparator<Method> METHODNAMECOMPARATOR = new Comparator<Method>() {
+    /** Sets the value of one property for a perturbation. */
+    private interface PropertyFiller {
+        void fill(Object bean, int perturbation, Graph graph) throws Throwable;
+    }
+
+    /**
+     * The filler for a setter: for int, long, boolean and char parameters a setter handle with exactly that primitive
+     * type is called with the unboxed value, so there is no boxing and no varargs array; otherwise the generated value
+     * is set with {@link BeanProperty#set(Object, Object)}.
+     */
+    private static PropertyFiller filler(final BeanProperty setter, final ValueGenerator generator) {
+        final Class<?> type = setter.getRawType();
+        final MethodHandle handle = type.isPrimitive() ? primitiveSetter(setter, type) : null;
+        if (null != handle) {
+            final int nameTerm = nameTerm(setter.getCapitalizedName());
+            final int nameId = nameId(setter.getCapitalizedName());
+            if (int.class == type)
+                return (bean, perturbation, graph) -> {
+                    handle.invokeExact(bean, intValue(graph.pseudorandom(nameId, nameTerm, perturbation)));
+                };
+            if (long.class == type)
+                return (bean, perturbation, graph) -> {
+                    handle.invokeExact(bean, longValue(graph.pseudorandom(nameId, nameTerm, perturbation)));
+                };
+            if (boolean.class == type)
+                return (bean, perturbation, graph) -> {
+                    handle.invokeExact(bean, booleanValue(graph.pseudorandom(nameId, nameTerm, perturbation)));
+                };
+            if (char.class == type)
+                return (bean, perturbation, graph) -> {
+                    handle.invokeExact(bean, charValue(graph.pseudorandom(nameId, nameTerm, perturbation)));
+                };
+        }
+        return (bean, perturbation, graph) -> setter.set(bean, generator.generate(perturbation, graph));
+    }
 
+    /** A (Object,type)void handle for the setter, or null if we have no access or it is static. */
+    private static MethodHandle primitiveSetter(final BeanProperty setter, final Class<?> type) {
+        final MethodHandle handle = setter.getExactHandle();
+        if (null == handle || Modifier.isStatic(setter.getMethod().getModifiers())) return null;
+        return handle.asType(MethodType.methodType(void.class, Object.class, type));
+    }
+
+    private static final ClassValue<FillPlan> PLANS = new ClassValue<FillPlan>() {
         @Override
-        public int compare(Method o1, Method o2) {
-            return o1.getName().compareTo(o2.getName());
+        protected FillPlan computeValue(final Class<?> type) {
+            return new FillPlan(type);
         }
     };
 
+    /**
+     * What we need to create and fill beans of a class, compiled once per class: the setters with a generator and a
+     * filler for each, so filling a bean is just a loop over the fillers.
+     */
+    private static final class FillPlan {
+
+        private final Class<?> beanClass;
+        /** ()Object, or null if there is no accessible default constructor. */
+        private final MethodHandle constructor;
+        final List<BeanProperty> setters;
+        /** The generators for the setters, same index. */
+        final ValueGenerator[] generators;
+        /** The fillers for the setters, same index. */
+        private final PropertyFiller[] fillers;
+
+        FillPlan(final Class<?> beanClass) {
+            this.beanClass = beanClass;
+            this.setters = BeanDescriptor.forClass(beanClass).getSetters();
+            this.generators = new ValueGenerator[setters.size()];
+            this.fillers = new PropertyFiller[setters.size()];
+            for (int i = 0; i < generators.length; ++i) {
+                generators[i] = generator(setters.get(i).getCapitalizedName(), setters.get(i).getType());
+                fillers[i] = filler(setters.get(i), generators[i]);
+            }
+            this.constructor = defaultConstructor(beanClass);
+        }
+
+        /** A ()Object handle for the default constructor, or null if there is none or we have no access. */
+        private static MethodHandle defaultConstructor(final Class<?> beanClass) {
+            final MethodType constructorType = MethodType.methodType(Object.class);
+            final Constructor<?> reflected;
+            try {
+                reflected = beanClass.getDeclaredConstructor();
+            } catch (final NoSuchMethodException | RuntimeException e) {
+                return null;
+            }
+            try {
+                return MethodHandles.lookup().unreflectConstructor(reflected).asType(constructorType);
+            } catch (final IllegalAccessException e) {
+                try {
+                    if (!reflected.trySetAccessible()) return null;
+                    return MethodHandles.lookup().unreflectConstructor(reflected).asType(constructorType);
+                } catch (IllegalAccessException | RuntimeException e2) {
+                    return null;
+                }
+            }
+        }
+
+        void fill(final Object bean, final int perturbation, final Graph graph) {
+            for (int i = 0; i < fillers.length; ++i) {
+                try {
+                    fillers[i].fill(bean, perturbation, graph);
+                } catch (final RuntimeException | Error e) {
+                    throw e;
+                } catch (final Throwable e) {
+                    throw new ContextedRuntimeException(e).addContextValue("property", setters.get(i));
+                }
+            }
+        }
+
+        /** A new, unfilled bean. */
+        Object newBean() {
+            if (null == constructor)
+                throw new IllegalArgumentException("Need accessible default constructor for " + beanClass);
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
+                throw new ContextedRuntimeException(e).addContextValue("class", beanClass);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,62 @@
+package net.stoerr.devtools.miscjavadevtools;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ClassNameFilter}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class TestClassNameFilter {
+
+    @Test
+    public void testEmpty() {
+        assertTrue(new ClassNameFilter().accepts("java.lang.String"));
+        assertTrue(new ClassNameFilter().accepts(""));
+    }
+
+    @Test
+    public void testDefaultCleanup() {
+        final ClassNameFilter filter = ClassNameFilter.defaultCleanup();
+        assertTrue(filter.accepts("de.company.Service"));
+        assertTrue(filter.accepts("java.lang.Thread"));
+        assertFalse(filter.accepts("de.company.Service$Inner"));
+        assertFalse(filter.accepts("de.company.ServiceEnhancerByCglib"));
+        assertFalse(filter.accepts("java.lang.reflect.Method"));
+        assertFalse(filter.accepts("jdk.internal.reflect.NativeMethodAccessorImpl"));
+        assertFalse(filter.accepts("org.apache.catalina.core.ApplicationFilterChain"));
+        assertFalse(filter.accepts("org.springframework.aop.framework.ReflectiveMethodInvocation"));
+        // twice to check the cached verdicts
+        assertTrue(filter.accepts("de.company.Service"));
+        assertFalse(filter.accepts("org.apache.catalina.core.ApplicationFilterChain"));
+    }
+
+    @Test
+    public void testOverlappingSubstrings() {
+        final ClassNameFilter filter = new ClassNameFilter().withDroppedSubstrings("abcd", "bc", "cx");
+        assertTrue(filter.accepts("abxd"));
+        assertFalse(filter.accepts("xabcy"));
+        assertFalse(filter.accepts("abcx"));
+        assertFalse(filter.accepts("aabcd"));
+        assertTrue(filter.accepts("acbd"));
+        assertFalse(filter.accepts("ÄbÖ.cx"));
+    }
+
+    @Test
+    public void testPrefixes() {
+        final ClassNameFilter filter = new ClassNameFilter().withRequiredPrefixes("de.", "net.stoerr.")
+                .withDroppedPrefixes("de.company.generated.");
+        assertTrue(filter.accepts("de.company.Service"));
+        assertTrue(filter.accepts("net.stoerr.Foo"));
+        assertFalse(filter.accepts("java.lang.Thread"));
+        assertFalse(filter.accepts("org.de.Foo"));
+        assertFalse(filter.accepts("de"));
+        assertFalse(filter.accepts("de.company.generated.Proxy"));
+        assertTrue(filter.accepts("de.company.generatedNot.Foo"));
+        filter.withDroppedSubstrings("Foo");
+        assertFalse(filter.accepts("net.stoerr.Foo"));
+    }
+
+}
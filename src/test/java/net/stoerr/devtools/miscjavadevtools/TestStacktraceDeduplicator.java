@@ -0,0 +1,58 @@
+package net.stoerr.devtools.miscjavadevtools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import net.stoerr.devtools.miscjavadevtools.StacktraceDeduplicator.Occurrence;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link StacktraceDeduplicator}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class TestStacktraceDeduplicator {
+
+    private StackTraceElement[] trace(final int line) {
+        return new StackTraceElement[] { new StackTraceElement("de.company.Service", "call", "Service.java", line),
+                new StackTraceElement("de.company.Main", "main", "Main.java", 7) };
+    }
+
+    @Test
+    public void testFingerprint() {
+        assertEquals(StacktraceDeduplicator.fingerprint(trace(3)), StacktraceDeduplicator.fingerprint(trace(3)));
+        assertNotEquals(StacktraceDeduplicator.fingerprint(trace(3)), StacktraceDeduplicator.fingerprint(trace(4)));
+        assertNotEquals(StacktraceDeduplicator.fingerprint(trace(3)),
+                StacktraceDeduplicator.fingerprint(new StackTraceElement[] { trace(3)[0] }));
+    }
+
+    @Test
+    public void testRegister() {
+        final StacktraceDeduplicator deduplicator = new StacktraceDeduplicator(2);
+        final Occurrence first = deduplicator.register(trace(3));
+        assertTrue(first.isFirst());
+        assertEquals(1, first.getCount());
+        final Occurrence second = deduplicator.register(trace(3));
+        assertFalse(second.isFirst());
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertEquals("trace #" + Long.toHexString(first.getFingerprint()) + " (seen 2x)", second.toString());
+        assertTrue(deduplicator.register(trace(4)).isFirst());
+        assertEquals(3, deduplicator.register(trace(3)).getCount());
+        // trace(4) is least recently seen, so it is forgotten
+        assertTrue(deduplicator.register(trace(5)).isFirst());
+        assertTrue(deduplicator.register(trace(4)).isFirst());
+    }
+
+    @Test
+    public void testRegisterCleanedTrace() {
+        final StacktraceDeduplicator deduplicator = new StacktraceDeduplicator(10);
+        Occurrence occurrence = null;
+        for (int i = 0; i < 3; ++i) {
+            occurrence = deduplicator.register(new StacktraceForLogging().withCleanedStacktrace());
+        }
+        assertEquals(3, occurrence.getCount());
+    }
+
+}
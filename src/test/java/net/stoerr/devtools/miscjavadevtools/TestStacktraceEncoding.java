@@ -0,0 +1,69 @@
+package net.stoerr.devtools.miscjavadevtools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link StacktraceEncoding}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class TestStacktraceEncoding {
+
+    private final StackTraceElement[] special = new StackTraceElement[] {
+            new StackTraceElement("de.company.Sërvice", "call", null, -2),
+            new StackTraceElement("de.company.Main", "main", "Main.java", 70000) };
+
+    /** The encoding does not keep module and classloader names. */
+    private StackTraceElement[] withoutModules(final StackTraceElement[] trace) {
+        final StackTraceElement[] result = new StackTraceElement[trace.length];
+        for (int i = 0; i < trace.length; ++i) {
+            result[i] = new StackTraceElement(trace[i].getClassName(), trace[i].getMethodName(),
+                    trace[i].getFileName(), trace[i].getLineNumber());
+        }
+        return result;
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        final StacktraceEncoding encoding = new StacktraceEncoding();
+        final StackTraceElement[] trace = withoutModules(new StacktraceForLogging().getStackTrace());
+        final int[] encoded = encoding.encode(trace);
+        assertEquals(StacktraceEncoding.FRAME_SIZE * trace.length, encoded.length);
+        assertArrayEquals(trace, encoding.decode(encoded));
+        final int size = encoding.size();
+        assertArrayEquals(encoded, encoding.encode(trace));
+        assertEquals(size, encoding.size());
+        assertArrayEquals(special, encoding.decode(encoding.encode(special)));
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        final StacktraceEncoding encoding = new StacktraceEncoding();
+        final StackTraceElement[] trace = withoutModules(new StacktraceForLogging().getStackTrace());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final StacktraceEncoding.Writer writer = new StacktraceEncoding.Writer(encoding, out);
+        writer.write(encoding.encode(trace));
+        final int firstSize = out.size();
+        writer.write(encoding.encode(trace));
+        assertTrue(out.size() - firstSize < firstSize / 4); // the symbols are written only once
+        writer.write(encoding.encode(special));
+        writer.close();
+
+        final StacktraceEncoding.Reader reader = new StacktraceEncoding.Reader(new ByteArrayInputStream(
+                out.toByteArray()));
+        assertArrayEquals(trace, reader.read());
+        assertArrayEquals(trace, reader.read());
+        assertArrayEquals(special, reader.read());
+        assertNull(reader.read());
+        reader.close();
+    }
+
+}
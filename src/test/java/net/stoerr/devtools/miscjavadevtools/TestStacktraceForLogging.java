@@ -0,0 +1,101 @@
+package net.stoerr.devtools.miscjavadevtools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link StacktraceForLogging}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class TestStacktraceForLogging {
+
+    @Test
+    public void testLazy() {
+        final StackTraceElement[] full = new StacktraceForLogging().getStackTrace();
+        final StackTraceElement[] lazy = StacktraceForLogging.lazy(Integer.MAX_VALUE).getStackTrace();
+        assertEquals(full.length, lazy.length);
+        assertEquals("testLazy", lazy[0].getMethodName());
+        assertEquals(TestStacktraceForLogging.class.getName(), lazy[0].getClassName());
+        for (int i = 1; i < full.length; ++i) {
+            assertEquals(full[i], lazy[i]);
+        }
+    }
+
+    @Test
+    public void testLazyMaxDepth() {
+        final StackTraceElement[] lazy = StacktraceForLogging.lazy(2).getStackTrace();
+        assertEquals(2, lazy.length);
+        assertEquals("testLazyMaxDepth", lazy[0].getMethodName());
+    }
+
+    @Test
+    public void testLazyCleaned() {
+        final StackTraceElement[] cleaned = StacktraceForLogging.lazyCleaned(10).getStackTrace();
+        assertEquals(11, cleaned.length);
+        assertEquals("--stacktrace-was-cleaned-up--", cleaned[0].getMethodName());
+        assertEquals("testLazyCleaned", cleaned[1].getMethodName());
+        for (final StackTraceElement element : cleaned) {
+            assertTrue(element.toString(), !element.getClassName().startsWith("java.lang.reflect"));
+        }
+    }
+
+    @Test
+    public void testLazyPrint() {
+        final StringWriter out = new StringWriter();
+        StacktraceForLogging.lazy(1).printStackTrace(new PrintWriter(out));
+        assertTrue(out.toString(), out.toString().contains("\tat " + TestStacktraceForLogging.class.getName()
+                + ".testLazyPrint("));
+    }
+
+    @Test
+    public void testCleanedStacktrace() {
+        final StackTraceElement[] cleaned = new StacktraceForLogging().withCleanedStacktrace().getStackTrace();
+        assertEquals("--stacktrace-was-cleaned-up--", cleaned[0].getMethodName());
+        assertEquals("testCleanedStacktrace", cleaned[1].getMethodName());
+        final StackTraceElement[] onlyTests = new StacktraceForLogging()
+                .withCleanedStacktrace(new ClassNameFilter().withRequiredPrefixes("net.stoerr.")).getStackTrace();
+        assertEquals(2, onlyTests.length);
+        assertEquals("testCleanedStacktrace", onlyTests[1].getMethodName());
+        final int fullLength = new StacktraceForLogging().getStackTrace().length;
+        final StackTraceElement[] nothingRemoved = new StacktraceForLogging()
+                .withCleanedStacktrace(new ClassNameFilter()).getStackTrace();
+        assertEquals(fullLength, nothingRemoved.length);
+        assertEquals("testCleanedStacktrace", nothingRemoved[0].getMethodName());
+    }
+
+    @Test
+    public void testSamplerOneIn() {
+        final StacktraceForLogging.Sampler sampler = StacktraceForLogging.Sampler.oneIn(3);
+        final StackTraceElement[] sampled = sampler.capture().getStackTrace();
+        assertEquals("testSamplerOneIn", sampled[0].getMethodName());
+        assertSame(StacktraceForLogging.NOT_SAMPLED, sampler.capture());
+        assertSame(StacktraceForLogging.NOT_SAMPLED, sampler.capture(ClassNameFilter.defaultCleanup(), 10));
+        assertEquals("testSamplerOneIn", sampler.capture(null, 1).getStackTrace()[0].getMethodName());
+    }
+
+    @Test
+    public void testSamplerPerSecond() {
+        final StacktraceForLogging.Sampler sampler = StacktraceForLogging.Sampler.perSecond(3);
+        assertTrue(sampler.sample());
+        assertTrue(sampler.sample());
+        assertTrue(sampler.sample());
+        assertFalse(sampler.sample());
+        assertFalse(sampler.sample());
+    }
+
+    @Test
+    public void testNotSampled() {
+        final StacktraceForLogging notSampled = StacktraceForLogging.NOT_SAMPLED;
+        assertEquals(0, notSampled.withCleanedStacktrace().getStackTrace().length);
+        notSampled.setStackTrace(new StacktraceForLogging().getStackTrace());
+        assertEquals(0, notSampled.getStackTrace().length);
+    }
+
+}
@@ -1,12 +1,17 @@
 package net.stoerr.devtools.miscjavadevtools.codegenerator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+import net.stoerr.devtools.miscjavadevtools.testutils.TestSimpleBeanFiller;
+
 import org.junit.Test;
 
 /**
@@ -87,7 +92,9 @@ public class TestBeanCodeGenerator {
         assertEquals(
                 ("import net.stoerr.devtools.miscjavadevtools.codegenerator.TestBeanCodeGenerator.TestBeanCodeGeneratorTestBean;\r\n"
                         + "import java.util.Map;\r\n"
+                        + "import java.util.TreeMap;\r\n"
                         + "import java.util.List;\r\n"
+                        + "import java.util.ArrayList;\r\n"
                         + "\r\n"
                         + "TestBeanCodeGeneratorTestBean bean = new TestBeanCodeGeneratorTestBean();\r\n"
                         + "bean.setAttr(\"bla blu foo\");\r\n"
@@ -163,4 +170,154 @@ public class TestBeanCodeGenerator {
 
     }
 
+    @Test
+    public void testStreaming() throws Exception {
+        final TestBeanCodeGeneratorTestBean bean = new TestBeanCodeGeneratorTestBean();
+        bean.setAttr("outer");
+        final TestBeanCodeGeneratorTestBean inner = new TestBeanCodeGeneratorTestBean();
+        inner.setList(java.util.Arrays.asList(1, 2));
+        bean.setRecursive(inner);
+
+        final BeanCodeGenerator inMemory = new BeanCodeGenerator();
+        inMemory.makeBean(bean, "bean");
+
+        final StringWriter code = new StringWriter();
+        final BeanCodeGenerator streaming = new BeanCodeGenerator(code);
+        assertEquals("bean", streaming.makeBean(bean, "bean"));
+        assertEquals(inMemory.getCode(), code.toString());
+        final StringWriter imports = new StringWriter();
+        streaming.writeImports(imports);
+        assertEquals(inMemory.getImports(), imports.toString());
+        assertEquals(inMemory.getImports(), streaming.toString());
+        try {
+            streaming.getCode();
+            fail("IllegalStateException expected");
+        } catch (final IllegalStateException e) {
+            // OK
+        }
+    }
+
+    /** Has the same simple name as {@link TestSimpleBeanFiller.Node} from another package. */
+    public static class Node {
+        private Object other;
+
+        public Object getOther() {
+            return other;
+        }
+
+        public void setOther(final Object other) {
+            this.other = other;
+        }
+    }
+
+    /** The class created by the constructor is imported or qualified like the declared type. */
+    @Test
+    public void testSameSimpleNames() {
+        final Node node = new Node();
+        final TestSimpleBeanFiller.Node other = new TestSimpleBeanFiller.Node();
+        other.setName("other");
+        node.setOther(other);
+
+        final BeanCodeGenerator generator = new BeanCodeGenerator();
+        assertEquals("node", generator.makeBean(node, "node"));
+        assertEquals("import net.stoerr.devtools.miscjavadevtools.codegenerator.TestBeanCodeGenerator.Node;\n" + "\n"
+                + "Node node = new Node();\n" + "\n"
+                + "Object object1 = new net.stoerr.devtools.miscjavadevtools.testutils.TestSimpleBeanFiller.Node();\n"
+                + "object1.setName(\"other\");\n" + "node.setOther(object1);\n", generator.toString());
+    }
+
+    @Test
+    public void testSharedAndEqualObjects() {
+        final TestBeanCodeGeneratorTestBean shared = new TestBeanCodeGeneratorTestBean();
+        shared.setAttr("same");
+        final TestBeanCodeGeneratorTestBean equal = new TestBeanCodeGeneratorTestBean();
+        equal.setAttr("same");
+        final List<TestBeanCodeGeneratorTestBean> list = new ArrayList<>();
+        list.add(shared);
+        list.add(equal);
+        list.add(shared);
+
+        final BeanCodeGenerator generator = new BeanCodeGenerator();
+        assertEquals("list", generator.makeBean(list, "list"));
+        assertEquals("\n" + "ArrayList list = new ArrayList();\n" + "\n"
+                + "TestBeanCodeGeneratorTestBean testBeanCodeGeneratorTestBean1 = "
+                + "new TestBeanCodeGeneratorTestBean();\n"
+                + "testBeanCodeGeneratorTestBean1.setAttr(\"same\");\n"
+                + "list.add(testBeanCodeGeneratorTestBean1);\n" + "\n"
+                + "TestBeanCodeGeneratorTestBean testBeanCodeGeneratorTestBean2 = "
+                + "new TestBeanCodeGeneratorTestBean();\n"
+                + "testBeanCodeGeneratorTestBean2.setAttr(\"same\");\n"
+                + "list.add(testBeanCodeGeneratorTestBean2);\n" + "\n"
+                + "list.add(testBeanCodeGeneratorTestBean1);\n", generator.getCode());
+    }
+
+    @Test
+    public void testDeepGraph() {
+        final TestBeanCodeGeneratorTestBean head = new TestBeanCodeGeneratorTestBean();
+        TestBeanCodeGeneratorTestBean current = head;
+        for (int i = 0; i < 50000; ++i) {
+            final TestBeanCodeGeneratorTestBean next = new TestBeanCodeGeneratorTestBean();
+            current.setRecursive(next);
+            current = next;
+        }
+        current.setAttr("last");
+
+        final BeanCodeGenerator generator = new BeanCodeGenerator();
+        assertEquals("head", generator.makeBean(head, "head"));
+        final String code = generator.getCode();
+        assertTrue(code.startsWith("\n" + "TestBeanCodeGeneratorTestBean head = new TestBeanCodeGeneratorTestBean();\n"
+                + "\n" + "TestBeanCodeGeneratorTestBean testBeanCodeGeneratorTestBean1 = "
+                + "new TestBeanCodeGeneratorTestBean();\n"));
+        assertTrue(code.contains("testBeanCodeGeneratorTestBean50000.setAttr(\"last\");\n"
+                + "testBeanCodeGeneratorTestBean49999.setRecursive(testBeanCodeGeneratorTestBean50000);\n"));
+        assertTrue(code.endsWith("head.setRecursive(testBeanCodeGeneratorTestBean1);\n"));
+    }
+
+    @Test
+    public void testPropertyNamingStrategy() {
+        final TestBeanCodeGeneratorTestBean bean = new TestBeanCodeGeneratorTestBean();
+        final TestBeanCodeGeneratorTestBean inner = new TestBeanCodeGeneratorTestBean();
+        inner.setList(new ArrayList<>(java.util.Arrays.asList(3)));
+        bean.setRecursive(inner);
+        bean.setList(new ArrayList<>(java.util.Arrays.asList(5)));
+
+        final BeanCodeGenerator generator = new BeanCodeGenerator()
+                .withNamingStrategy(BeanCodeGenerator.NamingStrategy.PROPERTY_NAME);
+        assertEquals("recursive1", generator.makeBean(bean, "recursive1"));
+        assertEquals("\n" + "TestBeanCodeGeneratorTestBean recursive1 = new TestBeanCodeGeneratorTestBean();\n" + "\n"
+                + "TestBeanCodeGeneratorTestBean recursive2 = new TestBeanCodeGeneratorTestBean();\n" + "\n"
+                + "List<Integer> list1 = new ArrayList();\n" + "list1.add(Integer.valueOf(3));\n"
+                + "recursive2.setList(list1);\n" + "recursive1.setRecursive(recursive2);\n" + "\n"
+                + "List<Integer> list2 = new ArrayList();\n" + "list2.add(Integer.valueOf(5));\n"
+                + "recursive1.setList(list2);\n", generator.getCode());
+        assertEquals("testBeanCodeGeneratorTestBean1", generator.makeBean(new TestBeanCodeGeneratorTestBean(), null));
+    }
+
+    @Test
+    public void testMakeBeansLikeSequential() {
+        final TestBeanCodeGeneratorTestBean shared = new TestBeanCodeGeneratorTestBean();
+        shared.setAttr("shared");
+        final List<TestBeanCodeGeneratorTestBean> beans = new ArrayList<>();
+        for (int i = 0; i < 300; ++i) {
+            final TestBeanCodeGeneratorTestBean bean = new TestBeanCodeGeneratorTestBean();
+            bean.setAttr("bean" + i);
+            bean.setList(java.util.Arrays.asList(i, i + 1));
+            final TestBeanCodeGeneratorTestBean inner = new TestBeanCodeGeneratorTestBean();
+            inner.setRecursive(0 == i % 3 ? shared : bean);
+            if (0 < i && 0 == i % 7) inner.setMap(java.util.Collections.singletonMap(i, "v"));
+            bean.setRecursive(0 == i % 5 && 0 < i ? beans.get(i - 1) : inner);
+            beans.add(bean);
+        }
+        beans.add(beans.get(17));
+
+        final BeanCodeGenerator sequential = new BeanCodeGenerator();
+        final List<String> sequentialNames = new ArrayList<>();
+        for (final Object bean : beans)
+            sequentialNames.add(sequential.makeBean(bean, null));
+
+        final BeanCodeGenerator parallel = new BeanCodeGenerator();
+        assertEquals(sequentialNames, parallel.makeBeans(beans));
+        assertEquals(sequential.toString(), parallel.toString());
+    }
+
 }
@@ -0,0 +1,150 @@
+package net.stoerr.devtools.miscjavadevtools.codegenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.stoerr.devtools.miscjavadevtools.testutils.TestSimpleBeanFiller.TestSimpleBean;
+import net.stoerr.devtools.miscjavadevtools.testutils.TestSimpleBeanFiller.TestSimpleBean2;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link BeanDescriptor}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class TestBeanDescriptor {
+
+    public static class TransientBean {
+        public transient String calculated;
+        private String name;
+
+        public String getCalculated() {
+            return calculated;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        public static String getStatic() {
+            return "static";
+        }
+
+        public String getFailing() {
+            throw new UnsupportedOperationException("failing");
+        }
+    }
+
+    @Test
+    public void testCached() {
+        assertSame(BeanDescriptor.forClass(TestSimpleBean.class), BeanDescriptor.forClass(TestSimpleBean.class));
+        assertSame(TestSimpleBean.class, BeanDescriptor.forClass(TestSimpleBean.class).getBeanClass());
+    }
+
+    /** Classes in modules not opened to us work, too - their private fields are just left out. */
+    @Test
+    public void testEncapsulatedClass() {
+        final BeanDescriptor descriptor = BeanDescriptor.forClass(java.text.SimpleDateFormat.class);
+        assertFalse(descriptor.getSetters().isEmpty());
+        assertNotNull(descriptor.getFields());
+        // the fields of JDK classes cannot be read, which is reported when they are used
+        final BeanProperty field = descriptor.getFields().get(0);
+        try {
+            field.get(new java.text.SimpleDateFormat());
+            fail("Expected exception for " + field);
+        } catch (final java.lang.reflect.InaccessibleObjectException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(field.getName()));
+        }
+    }
+
+    @Test
+    public void testGettersAndSetters() {
+        final BeanDescriptor descriptor = BeanDescriptor.forClass(TestSimpleBean.class);
+        assertEquals("[getAcalendar, getAdate, getAlong, getAnint, getAninteger, getAstring, isAboolean]",
+                methodNames(descriptor.getGetters()).toString());
+        assertEquals("[setAboolean, setAcalendar, setAdate, setAlong, setAnint, setAninteger, setAstring]",
+                methodNames(descriptor.getSetters()).toString());
+        final BeanProperty aboolean = descriptor.getGetters().get(6);
+        assertEquals("aboolean", aboolean.getName());
+        assertEquals("Aboolean", aboolean.getCapitalizedName());
+        assertSame(Boolean.TYPE, aboolean.getRawType());
+        assertNull(aboolean.getField()); // not public
+        assertFalse(aboolean.isTransient());
+    }
+
+    @Test
+    public void testGenericTypes() throws Exception {
+        final BeanProperty list = BeanDescriptor.forClass(TestSimpleBean2.class).getSetters().get(0);
+        assertEquals("setList", list.getMethod().getName());
+        assertEquals("java.util.List<java.lang.String>", list.getType().toString());
+        assertSame(List.class, list.getRawType());
+    }
+
+    @Test
+    public void testFields() throws Exception {
+        final List<BeanProperty> fields = BeanDescriptor.forClass(TransientBean.class).getFields();
+        assertEquals(2, fields.size());
+        assertEquals("calculated", fields.get(0).getName());
+        assertTrue(fields.get(0).isTransient());
+        assertEquals("Name", fields.get(1).getCapitalizedName());
+        final TransientBean bean = new TransientBean();
+        bean.setName("foo");
+        assertEquals("foo", fields.get(1).getField().get(bean));
+    }
+
+    @Test
+    public void testTransientGetter() {
+        final BeanProperty calculated = BeanDescriptor.forClass(TransientBean.class).getGetters().get(0);
+        assertEquals("getCalculated", calculated.getMethod().getName());
+        assertTrue(calculated.isTransient());
+        assertFalse(BeanDescriptor.forClass(TransientBean.class).getGetters().get(2).isTransient());
+    }
+
+    @Test
+    public void testAccessors() {
+        final TestSimpleBean bean = new TestSimpleBean();
+        final BeanDescriptor descriptor = BeanDescriptor.forClass(TestSimpleBean.class);
+        final BeanProperty anintSetter = descriptor.getSetters().get(4);
+        assertTrue(anintSetter.isSetter());
+        anintSetter.set(bean, 17);
+        assertEquals(17, bean.getAnint());
+        final BeanProperty anintGetter = descriptor.getGetters().get(3);
+        assertFalse(anintGetter.isSetter());
+        assertEquals(Integer.valueOf(17), anintGetter.get(bean));
+        descriptor.getSetters().get(6).set(bean, "foo");
+        assertEquals("foo", bean.getAstring());
+    }
+
+    @Test
+    public void testStaticAndFailingGetters() {
+        final List<BeanProperty> getters = BeanDescriptor.forClass(TransientBean.class).getGetters();
+        assertEquals("[getCalculated, getFailing, getName, getStatic]", methodNames(getters).toString());
+        assertEquals("static", getters.get(3).get(new TransientBean()));
+        try {
+            getters.get(1).get(new TransientBean());
+            fail("exception expected");
+        } catch (final UnsupportedOperationException e) {
+            assertEquals("failing", e.getMessage());
+        }
+    }
+
+    private List<String> methodNames(final List<BeanProperty> properties) {
+        final List<String> names = new ArrayList<>();
+        for (final BeanProperty property : properties)
+            names.add(property.getMethod().getName());
+        return names;
+    }
+
+}
@@ -0,0 +1,192 @@
+package net.stoerr.devtools.miscjavadevtools.codegenerator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ChunkedValueCodeGenerator}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class TestChunkedValueCodeGenerator {
+
+    private List<Integer> list;
+    private Map<String, List<Long>> map;
+    private Set<String> set;
+
+    @Test
+    public void testChunks() throws Exception {
+        final Type type = TestChunkedValueCodeGenerator.class.getDeclaredField("list").getGenericType();
+        final ChunkedValueCodeGenerator generator = new ChunkedValueCodeGenerator().withChunkSize(2);
+        assertEquals("java.util.Arrays.asList(1, 2)", generator.makeExpression(Arrays.asList(1, 2), type));
+        assertEquals("values1()", generator.makeExpression(Arrays.asList(1, 2, 3), type));
+        assertEquals("\n" //
+                + "    private static void values1Chunk0(final java.util.List<Integer> values) {\n"
+                + "        values.add(1);\n" //
+                + "        values.add(2);\n" //
+                + "    }\n" //
+                + "\n" //
+                + "    private static void values1Chunk1(final java.util.List<Integer> values) {\n"
+                + "        values.add(3);\n" //
+                + "    }\n" //
+                + "\n" //
+                + "    private static java.util.List<Integer> values1() {\n"
+                + "        final java.util.List<Integer> values = new java.util.ArrayList<Integer>(3);\n"
+                + "        values1Chunk0(values);\n" //
+                + "        values1Chunk1(values);\n" //
+                + "        return values;\n" //
+                + "    }\n", generator.getHelperMethods());
+    }
+
+    @Test
+    public void testNestedMap() throws Exception {
+        final Type type = TestChunkedValueCodeGenerator.class.getDeclaredField("map").getGenericType();
+        final ChunkedValueCodeGenerator generator = new ChunkedValueCodeGenerator().withChunkSize(2);
+        final Map<String, List<Long>> value = new TreeMap<>();
+        value.put("a", Arrays.asList(1L));
+        value.put("b", Arrays.asList(1L, 2L, 3L));
+        assertEquals("values1()", generator.makeExpression(value, type));
+        final String helperMethods = generator.getHelperMethods();
+        assertTrue(helperMethods, helperMethods.contains("        values.put(\"a\", java.util.Arrays.asList(1L));\n"
+                + "        values.put(\"b\", values2());\n"));
+        assertTrue(helperMethods, helperMethods.contains("    private static "
+                + "java.util.Map<String, java.util.List<Long>> values1() {\n"
+                + "        final java.util.Map<String, java.util.List<Long>> values = "
+                + "new java.util.TreeMap<String, java.util.List<Long>>();\n"));
+    }
+
+    /** Hash ordered sets are written sorted, so that the generated code is the same in each run. */
+    @Test
+    public void testDeterministicOrder() throws Exception {
+        final Type type = TestChunkedValueCodeGenerator.class.getDeclaredField("set").getGenericType();
+        final ChunkedValueCodeGenerator generator = new ChunkedValueCodeGenerator().withChunkSize(2);
+        assertEquals("new java.util.LinkedHashSet<String>(java.util.Arrays.asList(\"a\", \"b\"))",
+                generator.makeExpression(new HashSet<>(Arrays.asList("b", "a")), type));
+        assertEquals("values1()", generator.makeExpression(new HashSet<>(Arrays.asList("d", "c", "b", "a")), type));
+        final String helperMethods = generator.getHelperMethods();
+        assertTrue(helperMethods, helperMethods.contains("        values.add(\"a\");\n"
+                + "        values.add(\"b\");\n    }\n"));
+        assertTrue(helperMethods, helperMethods.contains("        values.add(\"c\");\n"
+                + "        values.add(\"d\");\n    }\n"));
+        assertTrue(helperMethods, helperMethods.contains("        final java.util.Set<String> values = "
+                + "new java.util.LinkedHashSet<String>();\n"));
+    }
+
+    /** The generated code for a list and a map split into several chunks compiles and recreates the values. */
+    @Test
+    public void testCompiles() throws Exception {
+        list = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            list.add(i * 7919);
+        }
+        map = new TreeMap<>();
+        for (long i = 0; i < 300; ++i) {
+            map.put("key" + i, Arrays.asList(i, -i));
+        }
+        final ChunkedValueCodeGenerator generator = new ChunkedValueCodeGenerator().withChunkSize(100);
+        final String code = "public class Generated {\n" //
+                + "    public static Object list() { return "
+                + generator.makeExpression(list, getClass().getDeclaredField("list").getGenericType()) + "; }\n"
+                + "    public static Object map() { return "
+                + generator.makeExpression(map, getClass().getDeclaredField("map").getGenericType()) + "; }\n"
+                + generator.getHelperMethods() + "}\n";
+        assertEquals(list, invoke("Generated", code, "list"));
+        assertEquals(map, invoke("Generated", code, "map"));
+    }
+
+    /** The helper methods can be put into a nested class, e.g. to have more than one constant pool. */
+    @Test
+    public void testHelperClass() throws Exception {
+        list = new ArrayList<>();
+        for (int i = 0; i < 300; ++i) {
+            list.add(i);
+        }
+        final ChunkedValueCodeGenerator generator = new ChunkedValueCodeGenerator().withChunkSize(100)
+                .withHelperClass("Values");
+        final String expression = generator.makeExpression(list, getClass().getDeclaredField("list")
+                .getGenericType());
+        assertEquals("Values.values1()", expression);
+        final String code = "public class GeneratedHolder {\n" //
+                + "    public static Object list() { return " + expression + "; }\n" //
+                + "    private static class Values {\n" + generator.getHelperMethods() + "    }\n" //
+                + "}\n";
+        assertEquals(list, invoke("GeneratedHolder", code, "list"));
+    }
+
+    /** Large primitive arrays are packed into Base64 strings, other arrays are filled in chunks. */
+    @Test
+    public void testArraysCompile() throws Exception {
+        final int[] ints = new int[120000]; // more than one Base64 string
+        final long[] longs = new long[300];
+        final byte[] bytes = new byte[300];
+        final char[] chars = new char[300];
+        final double[] doubles = new double[300];
+        final int[][] matrix = new int[300][];
+        for (int i = 0; i < ints.length; ++i)
+            ints[i] = i * 7919;
+        for (int i = 0; i < 300; ++i) {
+            longs[i] = -i * 1000000007L;
+            bytes[i] = (byte) i;
+            chars[i] = (char) (i * 211);
+            doubles[i] = i / 7.0;
+            matrix[i] = 0 == i % 2 ? null : new int[] { i };
+        }
+        final ChunkedValueCodeGenerator generator = new ChunkedValueCodeGenerator().withChunkSize(100);
+        final String code = "public class GeneratedArrays {\n" //
+                + "    public static Object[] arrays() { return new Object[] { "
+                + generator.makeExpression(ints, int[].class) + ", " + generator.makeExpression(longs, long[].class)
+                + ", " + generator.makeExpression(bytes, byte[].class) + ", "
+                + generator.makeExpression(chars, char[].class) + ", "
+                + generator.makeExpression(doubles, double[].class) + ", "
+                + generator.makeExpression(matrix, int[][].class) + " }; }\n" //
+                + generator.getHelperMethods() + "}\n";
+        final Object[] arrays = (Object[]) invoke("GeneratedArrays", code, "arrays");
+        assertArrayEquals(ints, (int[]) arrays[0]);
+        assertArrayEquals(longs, (long[]) arrays[1]);
+        assertArrayEquals(bytes, (byte[]) arrays[2]);
+        assertArrayEquals(chars, (char[]) arrays[3]);
+        assertArrayEquals(doubles, (double[]) arrays[4], 0);
+        assertTrue(Arrays.deepEquals(matrix, (int[][]) arrays[5]));
+    }
+
+    /** Compiles the class in a temporary directory and returns the result of calling its static method. */
+    static Object invoke(final String className, final String code, final String method) throws Exception {
+        final Path dir = Files.createTempDirectory("chunked");
+        try {
+            final Path source = dir.resolve(className + ".java");
+            Files.write(source, code.getBytes(StandardCharsets.UTF_8));
+            final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            assertEquals(0, compiler.run(null, null, null, "-encoding", "UTF-8", "-d", dir.toString(),
+                    source.toString()));
+            try (URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() })) {
+                return loader.loadClass(className).getMethod(method).invoke(null);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+}
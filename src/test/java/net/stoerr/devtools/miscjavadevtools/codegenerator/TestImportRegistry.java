@@ -0,0 +1,53 @@
+package net.stoerr.devtools.miscjavadevtools.codegenerator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ImportRegistry}.
+ * @author Hans-Peter Störr www.stoerr.net
+ */
+public class TestImportRegistry {
+
+    @Test
+    public void testReference() {
+        final ImportRegistry registry = new ImportRegistry();
+        assertEquals("Map", registry.reference(Map.class));
+        assertEquals("Map", registry.reference(Map.class));
+        assertEquals("String", registry.reference(String.class));
+        assertEquals("int", registry.reference(Integer.TYPE));
+        assertEquals("Entry[]", registry.reference(Map.Entry[].class));
+        assertEquals("Type", registry.reference(java.lang.reflect.Type.class));
+        assertEquals("import java.util.Map;\n" + "import java.util.Map.Entry;\n"
+                + "import java.lang.reflect.Type;\n", registry.getImports());
+    }
+
+    @Test
+    public void testCollision() {
+        final ImportRegistry registry = new ImportRegistry();
+        assertEquals("List", registry.reference(List.class));
+        assertEquals("java.awt.List", registry.reference(java.awt.List.class));
+        assertEquals("List", registry.reference(List.class));
+        assertEquals("Date", registry.reference(java.sql.Date.class));
+        assertEquals("java.util.Date", registry.reference(java.util.Date.class));
+        assertEquals("import java.util.List;\n" + "import java.sql.Date;\n", registry.getImports());
+    }
+
+    @Test
+    public void testSortedImports() {
+        final ImportRegistry registry = new ImportRegistry();
+        registry.reference(Test.class);
+        registry.reference(javax.naming.Context.class);
+        registry.reference(Map.class);
+        registry.reference(ImportRegistry.class);
+        registry.reference(List.class);
+        assertEquals("import java.util.List;\n" + "import java.util.Map;\n" + "\n" + "import javax.naming.Context;\n"
+                + "\n" + "import net.stoerr.devtools.miscjavadevtools.codegenerator.ImportRegistry;\n" + "\n"
+                + "import org.junit.Test;\n", registry.getSortedImports());
+    }
+
+}
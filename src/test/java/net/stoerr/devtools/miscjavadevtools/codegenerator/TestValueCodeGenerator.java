@@ -1,11 +1,19 @@
 package net.stoerr.devtools.miscjavadevtools.codegenerator;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.annotation.ElementType;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import org.junit.Test;
 
@@ -18,6 +26,9 @@ public class TestValueCodeGenerator {
     private List<Integer> list;
     private Set<Integer> set;
     private Map<Integer, String> map;
+    private Set<ElementType> enumSet;
+    private Map<ElementType, Integer> enumMap;
+    private Map<List<Integer>, String> listKeyMap;
 
     @Test
     public void testCreateList() throws Exception {
@@ -63,4 +74,155 @@ public class TestValueCodeGenerator {
         assertEquals("new java.util.TreeMap<Integer, String>() {{ put(1, \"p1\"); put(2, \"p2\"); }}",
                 ValueCodeGenerator.makeExpression(map, type, true));
     }
+
+    /** Hash ordered sets and maps are written sorted, so that the code does not depend on the hash order. */
+    @Test
+    public void testDeterministicOrder() throws Exception {
+        final Type setType = TestValueCodeGenerator.class.getDeclaredField("set").getGenericType();
+        set = new java.util.HashSet<Integer>(java.util.Arrays.asList(300, 20, 1));
+        assertEquals("new java.util.LinkedHashSet<Integer>(java.util.Arrays.asList(1, 20, 300))",
+                ValueCodeGenerator.makeExpression(set, setType, true));
+        set = new java.util.LinkedHashSet<Integer>(java.util.Arrays.asList(300, 20, 1));
+        assertEquals("new java.util.LinkedHashSet<Integer>(java.util.Arrays.asList(300, 20, 1))",
+                ValueCodeGenerator.makeExpression(set, setType, true));
+        // not Comparable, so a TreeMap would not work
+        final Type listKeyMapType = TestValueCodeGenerator.class.getDeclaredField("listKeyMap").getGenericType();
+        listKeyMap = new java.util.HashMap<List<Integer>, String>();
+        listKeyMap.put(java.util.Arrays.asList(2), "b");
+        listKeyMap.put(java.util.Arrays.asList(1, 2), "a");
+        assertEquals("new java.util.LinkedHashMap<java.util.List<Integer>, String>() {{ "
+                + "put(java.util.Arrays.asList(1, 2), \"a\"); put(java.util.Arrays.asList(2), \"b\"); }}",
+                ValueCodeGenerator.makeExpression(listKeyMap, listKeyMapType, true));
+    }
+
+    @Test
+    public void testEnumSetAndMap() throws Exception {
+        final Type enumSetType = TestValueCodeGenerator.class.getDeclaredField("enumSet").getGenericType();
+        enumSet = new java.util.HashSet<ElementType>(java.util.Arrays.asList(ElementType.METHOD, ElementType.TYPE));
+        assertEquals("java.util.EnumSet.of(java.lang.annotation.ElementType.TYPE, "
+                + "java.lang.annotation.ElementType.METHOD)", ValueCodeGenerator.makeExpression(enumSet, enumSetType,
+                true));
+        final Type enumMapType = TestValueCodeGenerator.class.getDeclaredField("enumMap").getGenericType();
+        enumMap = new java.util.HashMap<ElementType, Integer>();
+        enumMap.put(ElementType.METHOD, 2);
+        enumMap.put(ElementType.TYPE, 1);
+        assertEquals("new java.util.EnumMap<java.lang.annotation.ElementType, Integer>("
+                + "java.lang.annotation.ElementType.class) {{ put(java.lang.annotation.ElementType.TYPE, 1); "
+                + "put(java.lang.annotation.ElementType.METHOD, 2); }}",
+                ValueCodeGenerator.makeExpression(enumMap, enumMapType, true));
+    }
+
+    @Test
+    public void testEscaping() throws Exception {
+        assertEquals("\"a\\\"b\\\\c\\n\\t'\\u0000\\u00e4\"",
+                ValueCodeGenerator.makeExpression("a\"b\\c\n\t'\u0000\u00e4"));
+        assertEquals("'\\''", ValueCodeGenerator.makeExpression('\''));
+        assertEquals("'\"'", ValueCodeGenerator.makeExpression('"'));
+        assertEquals("'\\\\'", ValueCodeGenerator.makeExpression('\\'));
+        assertEquals("Character.valueOf('\\u20ac')",
+                ValueCodeGenerator.makeExpression('\u20ac', Character.class, false));
+    }
+
+    @Test
+    public void testAppendExpression() throws Exception {
+        final Type type = TestValueCodeGenerator.class.getDeclaredField("map").getGenericType();
+        final StringBuilder buf = new StringBuilder("x = ");
+        ValueCodeGenerator.appendExpression(buf, java.util.Collections.singletonMap(1, "p\"1"), type, true);
+        assertEquals("x = java.util.Collections.<Integer, String> singletonMap(1, \"p\\\"1\")", buf.toString());
+    }
+
+    @Test
+    public void testRenderers() throws Exception {
+        assertEquals("(byte) -3", ValueCodeGenerator.makeExpression((byte) -3));
+        assertEquals("Short.valueOf((short) 7)", ValueCodeGenerator.makeExpression((short) 7, Short.class, false));
+        assertEquals("1.5", ValueCodeGenerator.makeExpression(1.5));
+        assertEquals("Double.valueOf(Double.NaN)", ValueCodeGenerator.makeExpression(Double.NaN, Double.class, false));
+        assertEquals("1.0E10f", ValueCodeGenerator.makeExpression(1e10f, Float.TYPE, false));
+        assertEquals("Boolean.TRUE", ValueCodeGenerator.makeExpression(true, Boolean.class, false));
+        assertEquals("new java.math.BigDecimal(\"1.50\")", ValueCodeGenerator.makeExpression(new BigDecimal("1.50")));
+        assertEquals("java.time.LocalDate.parse(\"2014-05-03\")",
+                ValueCodeGenerator.makeExpression(LocalDate.of(2014, 5, 3)));
+        final ZonedDateTime dateTime = ZonedDateTime.parse("2014-05-03T10:15:30+02:00[Europe/Berlin]");
+        assertEquals("java.time.ZonedDateTime.parse(\"2014-05-03T10:15:30+02:00[Europe/Berlin]\")",
+                ValueCodeGenerator.makeExpression(dateTime));
+        assertEquals("java.lang.annotation.ElementType.FIELD",
+                ValueCodeGenerator.makeExpression(ElementType.FIELD, Object.class, false));
+        assertEquals("new String[] { \"a\", null }", ValueCodeGenerator.makeExpression(new String[] { "a", null }));
+        assertEquals("new Integer[0]", ValueCodeGenerator.makeExpression(new Integer[0]));
+    }
+
+    @Test
+    public void testIsSupported() throws Exception {
+        assertTrue(ValueCodeGenerator.isSupported(null, null));
+        assertTrue(ValueCodeGenerator.isSupported(3, null));
+        assertTrue(ValueCodeGenerator.isSupported(ElementType.FIELD, Object.class));
+        assertFalse(ValueCodeGenerator.isSupported(new Object(), null));
+        assertFalse(ValueCodeGenerator.isSupported(new Object[] { 1 }, null));
+        assertTrue(ValueCodeGenerator.isSupported(java.util.Arrays.asList(1, 2),
+                TestValueCodeGenerator.class.getDeclaredField("list").getGenericType()));
+        assertFalse(ValueCodeGenerator.isSupported(new Object(),
+                TestValueCodeGenerator.class.getDeclaredField("map").getGenericType()));
+    }
+
+    @Test
+    public void testRegisterRenderer() throws Exception {
+        final UUID uuid = UUID.fromString("123e4567-e89b-12d3-a456-426655440000");
+        assertFalse(ValueCodeGenerator.isSupported(uuid, null));
+        assertFalse(ValueCodeGenerator.isSupported(new UUID[] { uuid }, null));
+        ValueCodeGenerator.registerRenderer(UUID.class, new ValueRenderer() {
+            @Override
+            public void render(final Appendable out, final Object value, final boolean autoboxingEnabled)
+                    throws java.io.IOException {
+                out.append("java.util.UUID.fromString(\"").append(value.toString()).append("\")");
+            }
+        });
+        assertTrue(ValueCodeGenerator.isSupported(uuid, null));
+        assertEquals("new java.util.UUID[] { java.util.UUID.fromString(\"123e4567-e89b-12d3-a456-426655440000\") }",
+                ValueCodeGenerator.makeExpression(new UUID[] { uuid }));
+    }
+
+    /** A byte[] too large for one string constant is written as several Base64 literals, and compiles. */
+    @Test
+    public void testLargeByteArrayCompiles() throws Exception {
+        final byte[] bytes = new byte[100001];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = (byte) (i * 7919);
+        final String expression = ValueCodeGenerator.makeExpression(bytes);
+        assertTrue(expression.startsWith("java.util.Base64.getDecoder().decode(String.join(\"\", \""));
+        final String code = "public class GeneratedBytes {\n" //
+                + "    public static Object bytes() { return " + expression + "; }\n" //
+                + "}\n";
+        assertArrayEquals(bytes, (byte[]) TestChunkedValueCodeGenerator.invoke("GeneratedBytes", code, "bytes"));
+    }
+
+    private enum Nested {
+        VALUE
+    }
+
+    @Test
+    public void testNestedEnum() throws Exception {
+        final String name = "net.stoerr.devtools.miscjavadevtools.codegenerator.TestValueCodeGenerator.Nested";
+        assertEquals(name + ".VALUE", ValueCodeGenerator.makeExpression(Nested.VALUE));
+        assertEquals("new " + name + "[] { " + name + ".VALUE }",
+                ValueCodeGenerator.makeExpression(new Nested[] { Nested.VALUE }));
+    }
+
+    @Test
+    public void testPrimitiveArrays() throws Exception {
+        assertEquals("new int[] { 1, -2 }", ValueCodeGenerator.makeExpression(new int[] { 1, -2 }));
+        assertEquals("new long[] { 1L }", ValueCodeGenerator.makeExpression(new long[] { 1 }));
+        assertEquals("new short[0]", ValueCodeGenerator.makeExpression(new short[0]));
+        assertEquals("new double[] { 0.5, Double.NaN }", ValueCodeGenerator.makeExpression(new double[] { 0.5,
+                Double.NaN }));
+        assertEquals("new float[] { 2.0f }", ValueCodeGenerator.makeExpression(new float[] { 2 }));
+        assertEquals("new boolean[] { true, false }", ValueCodeGenerator.makeExpression(new boolean[] { true, false }));
+        assertEquals("new byte[] { 1, -1 }", ValueCodeGenerator.makeExpression(new byte[] { 1, -1 }));
+        assertEquals("java.util.Base64.getDecoder().decode(\"AAECAwQFBgcICQoLDA0ODxAR\")",
+                ValueCodeGenerator.makeExpression(new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                        17 }));
+        assertEquals("\"a\\\"b\".toCharArray()", ValueCodeGenerator.makeExpression("a\"b".toCharArray()));
+        assertEquals("new int[][] { new int[] { 1 }, null, new int[0] }",
+                ValueCodeGenerator.makeExpression(new int[][] { { 1 }, null, {} }));
+        assertEquals("new int[0][]", ValueCodeGenerator.makeExpression(new int[0][]));
+    }
 }
@@ -2,16 +2,23 @@ package net.stoerr.devtools.miscjavadevtools.testutils;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
@@ -46,6 +53,129 @@ public class TestSimpleBeanFiller {
         return bean;
     }
 
+    @Test
+    public void testFillBeans() {
+        final List<TestSimpleBean> beans = SimpleBeanFiller.fillBeans(TestSimpleBean.class, 15, 1015).collect(
+                Collectors.<TestSimpleBean> toList());
+        assertEquals(1000, beans.size());
+        assertEquals(makeFilledBean(15).toString(), beans.get(0).toString());
+        assertEquals(makeFilledBean(42).toString(), beans.get(27).toString());
+        final List<String> parallel = SimpleBeanFiller.fillBeans(TestSimpleBean.class, 15, 1015).parallel()
+                .map(Object::toString).collect(Collectors.<String> toList());
+        assertEquals(beans.stream().map(Object::toString).collect(Collectors.<String> toList()), parallel);
+    }
+
+    @Test
+    public void testExportCsv() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SimpleBeanFiller.export(TestSimpleBean.class, 15, 17, SimpleBeanFiller.ExportFormat.CSV,
+                Channels.newChannel(bytes));
+        final String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(3, lines.length);
+        assertEquals("aboolean,acalendar,adate,along,anint,aninteger,astring", lines[0]);
+        final TestSimpleBean bean = makeFilledBean(16);
+        assertEquals(bean.isAboolean() + "," + bean.getAcalendar().toInstant() + "," + bean.getAdate().toInstant()
+                + "," + bean.getAlong() + "," + bean.getAnint() + "," + bean.getAninteger() + "," + bean.getAstring(),
+                lines[2]);
+    }
+
+    @Test
+    public void testExportJsonLines() throws IOException {
+        final StringBuilder out = new StringBuilder();
+        SimpleBeanFiller.export(TestSimpleBean2.class, 42, 43, SimpleBeanFiller.ExportFormat.JSON_LINES, out);
+        final String line = out.toString();
+        assertTrue(line, line.startsWith("{\"list\":[\"List$0#42\",\"List$1#42\",\"List$2#42\"],\"map\":{"));
+        assertTrue(line, line.contains("\"514164281\":\"Map$0#42\""));
+        assertTrue(line, line.contains(",\"set\":["));
+        assertTrue(line, line.endsWith("]}\n"));
+    }
+
+    /** Nested beans are written as JSON objects, and beans that occur again as references. */
+    @Test
+    public void testExportNestedBeans() throws IOException {
+        final SimpleBeanFiller filler = new SimpleBeanFiller(7).withMaxDepth(1).withCollectionSizes(2, 2);
+        final StringBuilder out = new StringBuilder();
+        filler.exportBeans(Node.class, 1, SimpleBeanFiller.ExportFormat.JSON_LINES, out);
+        final List<Node> children = filler.createBean(Node.class).getChildren();
+        assertEquals("{\"children\":[{\"$id\":2,\"children\":[{\"$ref\":1},{\"$ref\":1}],\"name\":\""
+                + children.get(0).getName() + "\"},{\"$id\":3,\"children\":[{\"$ref\":1},{\"$ref\":1}],\"name\":\""
+                + children.get(1).getName() + "\"}],\"name\":\"Name#7\"}\n", out.toString());
+    }
+
+    @Test
+    public void testNestedBeans() {
+        final Node root = new SimpleBeanFiller(7).withMaxDepth(2).withCollectionSizes(2, 2).createBean(Node.class);
+        assertEquals("Name#7", root.getName());
+        assertEquals(2, root.getChildren().size());
+        final Node grandchild = root.getChildren().get(1).getChildren().get(0);
+        assertNotNull(grandchild.getName());
+        // below the maximum depth the existing beans are reused, which makes the graph cyclic
+        assertSame(root, grandchild.getChildren().get(0));
+        assertEquals(7, countNodes(root, new IdentityHashMap<Node, Boolean>()));
+
+        final Node limited = new SimpleBeanFiller(7).withMaxDepth(10).withCollectionSizes(3, 3).withMaxObjects(5)
+                .createBean(Node.class);
+        assertEquals(5, countNodes(limited, new IdentityHashMap<Node, Boolean>()));
+        assertEquals(limited.getChildren().get(0).getName(), new SimpleBeanFiller(7).withMaxDepth(10)
+                .withCollectionSizes(3, 3).withMaxObjects(5).createBean(Node.class).getChildren().get(0).getName());
+    }
+
+    private int countNodes(final Node node, final IdentityHashMap<Node, Boolean> seen) {
+        if (null == node || null != seen.put(node, Boolean.TRUE)) return 0;
+        int count = 1;
+        for (final Node child : node.getChildren()) {
+            count += countNodes(child, seen);
+        }
+        return count;
+    }
+
+    @Test
+    public void testDistributions() {
+        final SimpleBeanFiller filler = new SimpleBeanFiller(1000)
+                .withDistribution(SimpleBeanFiller.Distribution.UNIFORM)
+                .withDistribution("anint", SimpleBeanFiller.Distribution.SEQUENTIAL)
+                .withDistribution("aninteger", SimpleBeanFiller.Distribution.zipfian(100, 1.0));
+        final List<TestSimpleBean> beans = filler.createBeans(TestSimpleBean.class, 10000).collect(
+                Collectors.<TestSimpleBean> toList());
+        final Set<Long> longs = new HashSet<>();
+        final Map<Integer, Integer> zipfCounts = new HashMap<>();
+        for (int i = 0; i < beans.size(); ++i) {
+            final TestSimpleBean bean = beans.get(i);
+            assertEquals(1000 + i + 256, bean.getAnint());
+            longs.add(bean.getAlong());
+            assertTrue(bean.getAninteger() >= 256 && bean.getAninteger() < 356);
+            zipfCounts.merge(bean.getAninteger(), 1, Integer::sum);
+        }
+        assertTrue(longs.size() > 9990);
+        // rank 0 has about 1 / H(100) = 19% of the values, rank 1 half of that
+        assertTrue(zipfCounts.toString(), zipfCounts.get(256) > 1700 && zipfCounts.get(256) < 2200);
+        assertTrue(zipfCounts.toString(), zipfCounts.get(257) > 800 && zipfCounts.get(257) < 1150);
+        // the values do not depend on the order or thread in which the beans are created
+        final List<String> parallel = filler.createBeans(TestSimpleBean.class, 10000).parallel()
+                .map(Object::toString).collect(Collectors.<String> toList());
+        assertEquals(beans.stream().map(Object::toString).collect(Collectors.<String> toList()), parallel);
+    }
+
+    /** The distribution of a property is found by its exact name, even if another name has the same hash. */
+    @Test
+    public void testDistributionByExactName() {
+        final CollidingBean bean = new SimpleBeanFiller(1000)
+                .withDistribution("propyssvft", SimpleBeanFiller.Distribution.SEQUENTIAL)
+                .createBean(CollidingBean.class);
+        assertEquals(1000 + 256, bean.getPropyssvft());
+        assertEquals(new SimpleBeanFiller(1000).createBean(CollidingBean.class).getProplibnlf(), bean.getProplibnlf());
+    }
+
+    /** Primitive properties are set without boxing, but get the same values as their wrapper counterparts. */
+    @Test
+    public void testPrimitiveProperties() {
+        for (int perturbation = 0; perturbation < 100; ++perturbation) {
+            final PrimitiveBean primitive = SimpleBeanFiller.fillBean(new PrimitiveBean(), perturbation);
+            final WrapperBean wrapper = SimpleBeanFiller.fillBean(new WrapperBean(), perturbation);
+            assertEquals(wrapper.toString(), primitive.toString());
+        }
+    }
+
     @Test
     public void testGenericFiller() {
         final TestSimpleBean2 bean = new TestSimpleBean2();
@@ -141,6 +271,105 @@ public class TestSimpleBeanFiller {
 
     }
 
+    /** Two properties whose names have the same hash. */
+    public static class CollidingBean {
+        private int propyssvft;
+        private int proplibnlf;
+
+        public int getPropyssvft() {
+            return propyssvft;
+        }
+
+        public void setPropyssvft(final int propyssvft) {
+            this.propyssvft = propyssvft;
+        }
+
+        public int getProplibnlf() {
+            return proplibnlf;
+        }
+
+        public void setProplibnlf(final int proplibnlf) {
+            this.proplibnlf = proplibnlf;
+        }
+    }
+
+    public static class Node {
+        private String name;
+        private List<Node> children;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        public void setChildren(final List<Node> children) {
+            this.children = children;
+        }
+    }
+
+    public static class PrimitiveBean {
+        private int anint;
+        private long along;
+        private boolean aboolean;
+        private char achar;
+
+        public void setAnint(final int anint) {
+            this.anint = anint;
+        }
+
+        public void setAlong(final long along) {
+            this.along = along;
+        }
+
+        public void setAboolean(final boolean aboolean) {
+            this.aboolean = aboolean;
+        }
+
+        public void setAchar(final char achar) {
+            this.achar = achar;
+        }
+
+        @Override
+        public String toString() {
+            return anint + " " + along + " " + aboolean + " " + achar;
+        }
+    }
+
+    public static class WrapperBean {
+        private Integer anint;
+        private Long along;
+        private Boolean aboolean;
+        private Character achar;
+
+        public void setAnint(final Integer anint) {
+            this.anint = anint;
+        }
+
+        public void setAlong(final Long along) {
+            this.along = along;
+        }
+
+        public void setAboolean(final Boolean aboolean) {
+            this.aboolean = aboolean;
+        }
+
+        public void setAchar(final Character achar) {
+            this.achar = achar;
+        }
+
+        @Override
+        public String toString() {
+            return anint + " " + along + " " + aboolean + " " + achar;
+        }
+    }
+
     public static class TestSimpleBean2 {
         private List<String> list;
         private Map<Integer, String> map;